@@ -0,0 +1,122 @@
+package com.novarto.lang.jackson;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.*;
+import com.fasterxml.jackson.databind.deser.Deserializers;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.novarto.lang.denum.DynamicEnum;
+import com.novarto.lang.denum.DynamicEnumFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static fj.data.List.range;
+
+/**
+ * Serializes and deserializes a 10k-element array of dynamic enums, comparing LangModule against a module which
+ * reproduces its former behaviour: a new deserializer per lookup, a factory lookup and a String per token.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DynamicEnumArrayBenchmark
+{
+    private static final int SIZE = 10000;
+
+    private ObjectMapper mapper;
+    private ObjectMapper legacyMapper;
+    private Color[] colors;
+    private byte[] json;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        mapper = new ObjectMapper().registerModule(new LangModule());
+        legacyMapper = new ObjectMapper().registerModule(new LegacyModule());
+
+        Random r = new Random(42);
+        Color[] all = Color.F.values();
+        colors = new Color[SIZE];
+        for (int i = 0; i < SIZE; i++)
+        {
+            colors[i] = all[r.nextInt(all.length)];
+        }
+        json = mapper.writeValueAsBytes(colors);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException
+    {
+        return mapper.writeValueAsBytes(colors);
+    }
+
+    @Benchmark
+    public Color[] deserialize() throws IOException
+    {
+        return mapper.readValue(json, Color[].class);
+    }
+
+    @Benchmark
+    public Color[] deserializeLegacy() throws IOException
+    {
+        return legacyMapper.readValue(json, Color[].class);
+    }
+
+    public static final class Color extends DynamicEnum<Color>
+    {
+        static final DynamicEnumFactory<Color> F = new DynamicEnumFactory<>(Color.class,
+                () -> range(0, 32).map(i -> new Color(i, "Color" + i)));
+
+        private Color(int id, String name)
+        {
+            super(id, name);
+        }
+    }
+
+    private static final class LegacyModule extends SimpleModule
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void setupModule(SetupContext context)
+        {
+            super.setupModule(context);
+            context.addDeserializers(new Deserializers.Base()
+            {
+                @Override
+                public JsonDeserializer<?> findBeanDeserializer(JavaType type, DeserializationConfig config,
+                        BeanDescription beanDesc)
+                {
+                    if (DynamicEnum.class.isAssignableFrom(type.getRawClass()))
+                    {
+                        return new LegacyDeserializer(type.getRawClass());
+                    }
+                    return null;
+                }
+            });
+        }
+    }
+
+    private static final class LegacyDeserializer extends JsonDeserializer<DynamicEnum<?>>
+    {
+        private final Class<?> type;
+
+        private LegacyDeserializer(Class<?> type)
+        {
+            this.type = type;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public DynamicEnum<?> deserialize(JsonParser jp, DeserializationContext ctxt) throws IOException
+        {
+            String name = jp.getText();
+            return DynamicEnumFactory.unsafeFindFactory((Class<DynamicEnum>) type).byName(name);
+        }
+    }
+}
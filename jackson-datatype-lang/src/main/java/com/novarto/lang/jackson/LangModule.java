@@ -2,17 +2,40 @@ package com.novarto.lang.jackson;
 
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.novarto.lang.jackson.denum.DynamicEnumDeserializers;
+import com.novarto.lang.jackson.denum.DynamicEnumFormat;
 import com.novarto.lang.jackson.denum.DynamicEnumSerializers;
 
 public class LangModule extends SimpleModule
 {
     private static final long serialVersionUID = 1L;
 
+    //shared by all the mappers this module is registered with, so that each caches its instances per type only once
+    private final DynamicEnumDeserializers deserializers;
+    private final DynamicEnumSerializers serializers;
+
+    /**
+     * Create a module which reads and writes dynamic enums by name
+     */
+    public LangModule()
+    {
+        this(DynamicEnumFormat.NAME);
+    }
+
+    /**
+     * Create a module which reads and writes dynamic enums in the given format, unless overridden per property
+     * via {@link com.novarto.lang.jackson.denum.JsonDynamicEnumFormat}
+     */
+    public LangModule(DynamicEnumFormat dynamicEnumFormat)
+    {
+        this.deserializers = new DynamicEnumDeserializers(dynamicEnumFormat);
+        this.serializers = new DynamicEnumSerializers(dynamicEnumFormat);
+    }
+
     @Override
     public void setupModule(SetupContext context)
     {
         super.setupModule(context);
-        context.addDeserializers(new DynamicEnumDeserializers());
-        context.addSerializers(new DynamicEnumSerializers());
+        context.addDeserializers(deserializers);
+        context.addSerializers(serializers);
     }
 }
@@ -2,38 +2,82 @@ package com.novarto.lang.jackson.denum;
 
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.BeanProperty;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.deser.ContextualDeserializer;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import com.novarto.lang.denum.DynamicEnum;
 import com.novarto.lang.denum.DynamicEnumFactory;
 
 import java.io.IOException;
 
-public class DynamicEnumDeserializer extends StdDeserializer<DynamicEnum<?>>
+public class DynamicEnumDeserializer extends StdDeserializer<DynamicEnum<?>> implements ContextualDeserializer
 {
 
     private static final long serialVersionUID = 1L;
 
+    private final JavaType type;
+    private final DynamicEnumFormat format;
 
-    protected DynamicEnumDeserializer(JavaType valueType)
+    /**
+     * Bound on first use, and reused for every subsequent value. Not bound eagerly, so that merely creating the
+     * deserializer does not initialize the enum class.
+     */
+    private transient DynamicEnumFactory<?> factory;
+
+    protected DynamicEnumDeserializer(JavaType valueType, DynamicEnumFormat format)
     {
         super(valueType);
+        this.type = valueType;
+        this.format = format;
+    }
 
+    @Override
+    public JsonDeserializer<?> createContextual(DeserializationContext ctxt, BeanProperty property)
+    {
+        JsonDynamicEnumFormat annotation = property == null ? null : property.getAnnotation(JsonDynamicEnumFormat.class);
+        if (annotation == null || annotation.value() == format)
+        {
+            return this;
+        }
+        return new DynamicEnumDeserializer(type, annotation.value());
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public DynamicEnum<?> deserialize(JsonParser jp, DeserializationContext ctxt) throws IOException
     {
-        String name = jp.getText();
+        if (format != DynamicEnumFormat.NAME && jp.getCurrentToken() == JsonToken.VALUE_NUMBER_INT)
+        {
+            return factory().byId(jp.getIntValue());
+        }
+
+        if (format == DynamicEnumFormat.ID)
+        {
+            throw new JsonParseException(jp, "expected an int id, got " + jp.getCurrentToken());
+        }
+
+        //resolve the name straight from the parser's buffer, without materializing a String
+        char[] name = jp.getTextCharacters();
         if (name == null)
         {
             throw new JsonParseException(jp, "name text is null");
         }
 
-        DynamicEnumFactory<?> factory = DynamicEnumFactory.unsafeFindFactory((Class<DynamicEnum>) handledType());
+        return factory().byName(name, jp.getTextOffset(), jp.getTextLength());
+    }
 
-        return factory.byName(name);
+    @SuppressWarnings("unchecked")
+    private DynamicEnumFactory<?> factory()
+    {
+        DynamicEnumFactory<?> result = factory;
+        if (result == null)
+        {
+            result = DynamicEnumFactory.unsafeFindFactory((Class<DynamicEnum>) handledType());
+            factory = result;
+        }
+        return result;
     }
 }
@@ -4,11 +4,34 @@ import com.fasterxml.jackson.databind.*;
 import com.fasterxml.jackson.databind.deser.Deserializers;
 import com.novarto.lang.denum.DynamicEnum;
 
+import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * Created by fmap on 23.06.16.
+ *
+ * Keeps a single deserializer instance per dynamic enum type, so that lookups do not create a new one every time.
  */
-public class DynamicEnumDeserializers extends Deserializers.Base
+public class DynamicEnumDeserializers extends Deserializers.Base implements Serializable
 {
+    private static final long serialVersionUID = 1L;
+
+    private final DynamicEnumFormat format;
+    private final ConcurrentHashMap<Class<?>, DynamicEnumDeserializer> cache = new ConcurrentHashMap<>();
+
+    public DynamicEnumDeserializers()
+    {
+        this(DynamicEnumFormat.NAME);
+    }
+
+    /**
+     * @param format the wire format of all dynamic enums, unless overridden per property
+     */
+    public DynamicEnumDeserializers(DynamicEnumFormat format)
+    {
+        this.format = format;
+    }
+
     @Override
     public JsonDeserializer<?> findBeanDeserializer(JavaType type, DeserializationConfig config, BeanDescription beanDesc)
             throws JsonMappingException
@@ -16,7 +39,7 @@ public class DynamicEnumDeserializers extends Deserializers.Base
         Class<?> raw = type.getRawClass();
         if (DynamicEnum.class.isAssignableFrom(raw))
         {
-            return new DynamicEnumDeserializer(type);
+            return cache.computeIfAbsent(raw, ignore -> new DynamicEnumDeserializer(type, format));
         }
 
         return super.findBeanDeserializer(type, config, beanDesc);
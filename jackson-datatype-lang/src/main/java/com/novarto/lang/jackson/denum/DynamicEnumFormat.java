@@ -0,0 +1,25 @@
+package com.novarto.lang.jackson.denum;
+
+/**
+ * The wire format of dynamic enums. It can be configured for all dynamic enums via the LangModule constructor,
+ * and overridden per property via {@link JsonDynamicEnumFormat}.
+ */
+public enum DynamicEnumFormat
+{
+    /**
+     * Write the name as a string, and read only names. This is the default.
+     */
+    NAME,
+
+    /**
+     * Write the id as a number, and read only ids. The compact choice for high-volume traffic, especially with
+     * binary backends such as Smile or CBOR.
+     */
+    ID,
+
+    /**
+     * Write the name as a string, and read either a name or an id. Useful when migrating between the other two
+     * formats.
+     */
+    ANY
+}
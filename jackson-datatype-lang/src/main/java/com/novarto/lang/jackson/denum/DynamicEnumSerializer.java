@@ -1,28 +1,156 @@
 package com.novarto.lang.jackson.denum;
 
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.BeanProperty;
 import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonSerializer;
 import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.ContextualSerializer;
 import com.fasterxml.jackson.databind.ser.std.StdSerializer;
 import com.novarto.lang.denum.DynamicEnum;
+import com.novarto.lang.denum.DynamicEnumFactory;
 
 import java.io.IOException;
 
-public class DynamicEnumSerializer extends StdSerializer<DynamicEnum<?>>
+public class DynamicEnumSerializer extends StdSerializer<DynamicEnum<?>> implements ContextualSerializer
 {
 
     private static final long serialVersionUID = 1L;
 
-    protected DynamicEnumSerializer(JavaType type)
+    private final JavaType type;
+    private final DynamicEnumFormat format;
+
+    /**
+     * The names of all instances, pre-encoded and indexed by ordinal. Bound on first use, and rebuilt when the
+     * factory has been reloaded with new instances.
+     */
+    private transient NameTable names;
+
+    protected DynamicEnumSerializer(JavaType type, DynamicEnumFormat format)
     {
         super(type);
+        this.type = type;
+        this.format = format;
+    }
+
+    @Override
+    public JsonSerializer<?> createContextual(SerializerProvider prov, BeanProperty property)
+    {
+        JsonDynamicEnumFormat annotation = property == null ? null : property.getAnnotation(JsonDynamicEnumFormat.class);
+        if (annotation == null || annotation.value() == format)
+        {
+            return this;
+        }
+        return new DynamicEnumSerializer(type, annotation.value());
     }
 
     @Override
     public void serialize(DynamicEnum<?> value, JsonGenerator jgen, SerializerProvider provider)
             throws IOException
     {
+        if (format == DynamicEnumFormat.ID)
+        {
+            jgen.writeNumber(value.id);
+            return;
+        }
 
+        NameTable table = names();
+        SerializedString name = table.get(value);
+        if (name == null && value.ordinal() >= table.size() && value.getClass() == handledType())
+        {
+            //possibly a value added by a reload of the factory. A value which a reload has removed is not in the
+            //table either, so the table is only rebuilt if the factory's values have changed since it was built
+            DynamicEnum<?>[] values = values();
+            if (values != table.values)
+            {
+                table = new NameTable(values);
+                names = table;
+                name = table.get(value);
+            }
+        }
+
+        if (name != null)
+        {
+            jgen.writeString(name);
+        }
+        else
+        {
             jgen.writeString(value.name);
+        }
+    }
+
+    private NameTable names()
+    {
+        NameTable result = names;
+        if (result == null)
+        {
+            result = new NameTable(values());
+            names = result;
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private DynamicEnum<?>[] values()
+    {
+        try
+        {
+            return DynamicEnumFactory.unsafeFindFactory((Class<DynamicEnum>) (Class<?>) handledType()).values();
+        }
+        catch (IllegalStateException e)
+        {
+            //e.g. an abstract dynamic enum base class; the values are written as plain strings
+            return new DynamicEnum<?>[0];
+        }
+    }
+
+    /**
+     * SerializedString caches the quoted UTF-8 and char encodings of its value once computed, so every name is
+     * escaped and encoded once per type, rather than once per written value.
+     */
+    private static final class NameTable
+    {
+        //the values of the factory the table was built from; the factory replaces them on every reload
+        private final DynamicEnum<?>[] values;
+        private final DynamicEnum<?>[] instances;
+        private final SerializedString[] names;
+
+        private NameTable(DynamicEnum<?>[] values)
+        {
+            this.values = values;
+            int size = 0;
+            for (DynamicEnum<?> x : values)
+            {
+                size = Math.max(size, x.ordinal() + 1);
+            }
+
+            this.instances = new DynamicEnum<?>[size];
+            this.names = new SerializedString[size];
+            for (DynamicEnum<?> x : values)
+            {
+                SerializedString name = new SerializedString(x.name);
+                //compute the encodings eagerly, so that the hot path never does
+                name.asQuotedUTF8();
+                name.asQuotedChars();
+
+                instances[x.ordinal()] = x;
+                names[x.ordinal()] = name;
+            }
+        }
+
+        private int size()
+        {
+            return instances.length;
+        }
+
+        /**
+         * The pre-encoded name of the value, or null if it is not one of the instances known to the factory
+         */
+        private SerializedString get(DynamicEnum<?> value)
+        {
+            int ordinal = value.ordinal();
+            return ordinal >= 0 && ordinal < instances.length && instances[ordinal] == value ? names[ordinal] : null;
+        }
     }
 }
@@ -7,18 +7,41 @@ import com.fasterxml.jackson.databind.SerializationConfig;
 import com.fasterxml.jackson.databind.ser.Serializers;
 import com.novarto.lang.denum.DynamicEnum;
 
+import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * Created by fmap on 23.06.16.
+ *
+ * Keeps a single serializer instance per dynamic enum type, so that lookups do not create a new one every time.
  */
-public class DynamicEnumSerializers extends Serializers.Base
+public class DynamicEnumSerializers extends Serializers.Base implements Serializable
 {
+    private static final long serialVersionUID = 1L;
+
+    private final DynamicEnumFormat format;
+    private final ConcurrentHashMap<Class<?>, DynamicEnumSerializer> cache = new ConcurrentHashMap<>();
+
+    public DynamicEnumSerializers()
+    {
+        this(DynamicEnumFormat.NAME);
+    }
+
+    /**
+     * @param format the wire format of all dynamic enums, unless overridden per property
+     */
+    public DynamicEnumSerializers(DynamicEnumFormat format)
+    {
+        this.format = format;
+    }
+
     @Override
     public JsonSerializer<?> findSerializer(SerializationConfig config, JavaType type, BeanDescription beanDesc)
     {
         Class<?> raw = type.getRawClass();
         if (DynamicEnum.class.isAssignableFrom(raw))
         {
-            return new DynamicEnumSerializer(type);
+            return cache.computeIfAbsent(raw, ignore -> new DynamicEnumSerializer(type, format));
         }
 
         return super.findSerializer(config, type, beanDesc);
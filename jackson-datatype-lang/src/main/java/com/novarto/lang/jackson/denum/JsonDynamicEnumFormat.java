@@ -0,0 +1,17 @@
+package com.novarto.lang.jackson.denum;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Overrides the wire format of a dynamic enum property (or of the elements of a collection, array or map value
+ * property), regardless of the format LangModule is configured with.
+ */
+@Target({ElementType.FIELD, ElementType.METHOD, ElementType.PARAMETER})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface JsonDynamicEnumFormat
+{
+    DynamicEnumFormat value();
+}
@@ -4,7 +4,11 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.novarto.lang.denum.DynamicEnum;
 import com.novarto.lang.denum.DynamicEnumFactory;
+import com.novarto.lang.jackson.denum.DynamicEnumFormat;
+import com.novarto.lang.jackson.denum.JsonDynamicEnumFormat;
 import fj.Equal;
+import fj.Try;
+import fj.function.Try0;
 import fj.test.Arbitrary;
 import fj.test.Gen;
 import fj.test.Property;
@@ -13,6 +17,7 @@ import org.junit.runner.RunWith;
 
 import static com.novarto.lang.testutil.TestUtil.tryTo;
 import static fj.data.List.list;
+import static java.util.Arrays.asList;
 import static fj.test.Property.prop;
 import static fj.test.Property.property;
 
@@ -20,9 +25,13 @@ import static fj.test.Property.property;
 public class LangModuleTest
 {
     public static final ObjectMapper MAPPER = new ObjectMapper();
+    public static final ObjectMapper ID_MAPPER = new ObjectMapper();
+    public static final ObjectMapper ANY_MAPPER = new ObjectMapper();
     static
     {
         MAPPER.registerModule(new LangModule());
+        ID_MAPPER.registerModule(new LangModule(DynamicEnumFormat.ID));
+        ANY_MAPPER.registerModule(new LangModule(DynamicEnumFormat.ANY));
     }
 
 
@@ -48,8 +57,55 @@ public class LangModuleTest
 
     }
 
+    public Property canDeserializeDynamicEnumWithEscapedName()
+    {
+        TypeReference<Escaped> type = new TypeReference<Escaped>()
+        {
+        };
+
+        return property(genDynamicEnum(Escaped.F), x -> serializeDeserialize(x, type, Equal.anyEqual()));
+    }
+
+    public Property idFormat()
+    {
+        return property(genDynamicEnum(Color.F), x -> prop(tryTo(() ->
+        {
+            String json = ID_MAPPER.writeValueAsString(x);
+            return json.equals(String.valueOf(x.id)) && ID_MAPPER.readValue(json, Color.class) == x &&
+                    fails(() -> ID_MAPPER.readValue('"' + x.name + '"', Color.class));
+        })));
+    }
+
+    public Property anyFormatReadsBoth()
+    {
+        return property(genDynamicEnum(Color.F), x -> prop(tryTo(() ->
+                ANY_MAPPER.writeValueAsString(x).equals('"' + x.name + '"') &&
+                        ANY_MAPPER.readValue(String.valueOf(x.id), Color.class) == x &&
+                        ANY_MAPPER.readValue('"' + x.name + '"', Color.class) == x)));
+    }
+
+    public Property formatPerProperty()
+    {
+        return property(genDynamicEnum(Color.F), genDynamicEnum(Color.F), (x, y) -> prop(tryTo(() ->
+        {
+            Palette in = new Palette();
+            in.byName = x;
+            in.byId = y;
+            in.allById = asList(x, y);
+
+            String json = MAPPER.writeValueAsString(in);
+            String expected = "{\"byName\":\"" + x.name + "\",\"byId\":" + y.id +
+                    ",\"allById\":[" + x.id + "," + y.id + "]}";
+            Palette out = MAPPER.readValue(json, Palette.class);
 
+            return json.equals(expected) && out.byName == x && out.byId == y && out.allById.equals(in.allById);
+        })));
+    }
 
+    private static boolean fails(Try0<?, Exception> f)
+    {
+        return Try.f(f).f().isFail();
+    }
 
     private static <A> Property serializeDeserialize(A in, TypeReference<A> type, Equal<A> equal)
     {
@@ -93,5 +149,28 @@ public class LangModuleTest
 
     }
 
+    public static final class Palette
+    {
+        public Color byName;
+
+        @JsonDynamicEnumFormat(DynamicEnumFormat.ID)
+        public Color byId;
+
+        @JsonDynamicEnumFormat(DynamicEnumFormat.ID)
+        public java.util.List<Color> allById;
+    }
+
+    public static final class Escaped extends DynamicEnum<Escaped>
+    {
+        private Escaped(int id, String name)
+        {
+            super(id, name);
+        }
+
+        private static final DynamicEnumFactory<Escaped> F = new DynamicEnumFactory<>(Escaped.class,
+                () -> list(new Escaped(1, "quote\"d"), new Escaped(2, "back\\slash"), new Escaped(3, "tab\t"),
+                        new Escaped(4, "caf\u00E9"), new Escaped(5, "\uD83C\uDF4F")));
+    }
+
 
 }
@@ -0,0 +1,116 @@
+package com.novarto.lang.guava;
+
+import com.google.common.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.google.common.util.concurrent.Futures.addCallback;
+
+/**
+ * Measures the latency of Await.ready for a future which is completed by another thread after a short delay,
+ * against the former implementation which polled the future with exponentially growing park intervals.
+ * The reported time includes the delay itself, so the overhead of awaiting is the difference between the two.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AwaitBenchmark
+{
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @Param({"0", "50", "500"})
+    long delayMicros;
+
+    private ExecutorService completer;
+
+    @Setup
+    public void setup()
+    {
+        completer = Executors.newSingleThreadExecutor();
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        completer.shutdownNow();
+    }
+
+    @Benchmark
+    public Object eventDriven() throws Exception
+    {
+        return FutureOpAliases.Await.ready(completeLater(), TIMEOUT).get();
+    }
+
+    @Benchmark
+    public Object polling() throws Exception
+    {
+        return pollingReady(completeLater(), TIMEOUT).get();
+    }
+
+    private ListenableFuture<Long> completeLater()
+    {
+        final SettableFuture<Long> result = SettableFuture.create();
+        final long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(delayMicros);
+        completer.execute(() ->
+        {
+            //spin rather than sleep, so the delay is accurate at microsecond granularity
+            while (System.nanoTime() < deadline)
+            {
+                //busy wait
+            }
+            result.set(deadline);
+        });
+        return result;
+    }
+
+    /**
+     * The former implementation of Await.ready
+     */
+    private static <A> ListenableFuture<A> pollingReady(final ListenableFuture<A> future, final Duration duration)
+    {
+        final SettableFuture<A> computed = SettableFuture.create();
+
+        addCallback(future, new FutureCallback<A>()
+        {
+            @Override
+            public void onSuccess(A result)
+            {
+                computed.set(result);
+            }
+
+            @Override
+            public void onFailure(Throwable t)
+            {
+                computed.setException(t);
+            }
+        }, MoreExecutors.directExecutor());
+
+        final long start = System.nanoTime();
+
+        long currStepNanos = Math.max(1000000, duration.toNanos() / 100000000000L);
+
+        while (!computed.isDone())
+        {
+            final long elapsed = System.nanoTime() - start;
+            final long remaining = duration.toNanos() - elapsed;
+
+            if (remaining <= 0)
+            {
+                computed.setException(new TimeoutException("Failed to complete for " + duration.toNanos()));
+                break;
+            }
+
+            LockSupport.parkNanos(Math.min(remaining, currStepNanos));
+
+            currStepNanos = currStepNanos << 1;
+        }
+
+        return computed;
+    }
+}
@@ -1,16 +1,20 @@
 package com.novarto.lang.guava;
 
 import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.*;
 import com.novarto.lang.Stackless;
+import fj.data.Validation;
 import fj.function.Effect0;
 
 import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeoutException;
-import java.util.concurrent.locks.LockSupport;
 
 import static com.google.common.util.concurrent.Futures.*;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 /**
  * <p>
@@ -113,6 +117,144 @@ public class FutureOpAliases
 
     }
 
+    /**
+     * Same as {@link #collect(ListenableFuture[])}, but as soon as any of the futures fails, all of the others are
+     * cancelled (interrupting them if running), so no more work is wasted on a result which is already failed.
+     *
+     * @param futures
+     * @param <A>
+     * @return
+     */
+    @SafeVarargs @SuppressWarnings("varargs")
+    public static <A> ListenableFuture<java.util.List<A>> collectFailFast(ListenableFuture<A>... futures)
+    {
+        return collectFailFast(java.util.Arrays.asList(futures));
+    }
+
+    /**
+     * Same as {@link #collect(Iterable)}, but as soon as any of the futures fails, all of the others are cancelled
+     * (interrupting them if running), so no more work is wasted on a result which is already failed.
+     *
+     * @param futures
+     * @param <A>
+     * @return
+     */
+    public static <A> ListenableFuture<java.util.List<A>> collectFailFast(Iterable<ListenableFuture<A>> futures)
+    {
+        final ImmutableList<ListenableFuture<A>> xs = ImmutableList.copyOf(futures);
+        final ListenableFuture<java.util.List<A>> result = allAsList(xs);
+        result.addListener(() -> {
+            if (!succeeded(result))
+            {
+                for (ListenableFuture<A> x : xs)
+                {
+                    x.cancel(true);
+                }
+            }
+        }, MoreExecutors.directExecutor());
+        return result;
+    }
+
+    /**
+     * collectSettled waits for all of the passed futures to complete, successfully or not, and never fails.
+     * If all of them succeeded, the result is a success of their values, in order. Otherwise it is a failure holding
+     * the outcome of every future, in order, so that the values which did succeed are still available.
+     * A cancelled future is reported as a failure with a CancellationException.
+     * No per element wrappers are allocated unless something failed.
+     *
+     * @param futures
+     * @param <A>
+     * @return
+     */
+    public static <A> ListenableFuture<Validation<java.util.List<Validation<Throwable, A>>, java.util.List<A>>>
+    collectSettled(Iterable<ListenableFuture<A>> futures)
+    {
+        final ImmutableList<ListenableFuture<A>> xs = ImmutableList.copyOf(futures);
+        return whenAllComplete(xs).call(() -> settle(xs), MoreExecutors.directExecutor());
+    }
+
+    private static <A> Validation<java.util.List<Validation<Throwable, A>>, java.util.List<A>> settle(
+            java.util.List<ListenableFuture<A>> xs)
+    {
+        final java.util.List<A> values = new java.util.ArrayList<>(xs.size());
+        java.util.List<Validation<Throwable, A>> outcomes = null;
+        for (ListenableFuture<A> x : xs)
+        {
+            Validation<Throwable, A> outcome;
+            try
+            {
+                A value = getDone(x);
+                if (outcomes == null)
+                {
+                    values.add(value);
+                    continue;
+                }
+                outcome = Validation.success(value);
+            }
+            catch (ExecutionException e)
+            {
+                outcome = Validation.fail(e.getCause());
+            }
+            catch (CancellationException e)
+            {
+                outcome = Validation.fail(e);
+            }
+
+            if (outcomes == null)
+            {
+                //the first failure: wrap the values seen so far
+                outcomes = new java.util.ArrayList<>(xs.size());
+                for (A value : values)
+                {
+                    outcomes.add(Validation.success(value));
+                }
+            }
+            outcomes.add(outcome);
+        }
+        return outcomes == null ? Validation.success(values) : Validation.fail(outcomes);
+    }
+
+    private static boolean succeeded(ListenableFuture<?> done)
+    {
+        try
+        {
+            getDone(done);
+            return true;
+        }
+        catch (ExecutionException | CancellationException e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * traverse applies an asynchronous function to each element, and yields a Future of the list of results.
+     * Unlike collect over already started futures, at most maxInFlight invocations of the function are incomplete
+     * at any time; the next element is taken from the iterable only when an earlier future completes.
+     * The returned sequence's order corresponds to the order of the passed-in sequence.
+     * The returned future fails with the first failure, after which no new work is started. Cancelling it cancels
+     * the futures in flight.
+     *
+     * @param xs          the input, which is iterated lazily
+     * @param f           the function to apply, invoked by one thread at a time
+     * @param maxInFlight the maximum number of incomplete futures, must be positive
+     */
+    public static <A, B> ListenableFuture<java.util.List<B>> traverse(Iterable<A> xs, AsyncFunction<A, B> f,
+            int maxInFlight)
+    {
+        return Traversal.start(xs, f, maxInFlight, true);
+    }
+
+    /**
+     * Same as {@link #traverse(Iterable, AsyncFunction, int)}, but the results are in completion order rather than
+     * in input order. Use it when the order is irrelevant, e.g. when the results are aggregated.
+     */
+    public static <A, B> ListenableFuture<java.util.List<B>> traverseUnordered(Iterable<A> xs, AsyncFunction<A, B> f,
+            int maxInFlight)
+    {
+        return Traversal.start(xs, f, maxInFlight, false);
+    }
+
     public static class Await
     {
         /**
@@ -121,6 +263,9 @@ public class FutureOpAliases
          * returned future will be true.
          * If computation of the passed future is not finished within specified timeout, a completed failed
          * future with {@link TimeoutException} will be returned.
+         * The calling thread is blocked until the future completes or the timeout elapses, and observes the
+         * completion as soon as it is signalled. If the thread is interrupted meanwhile, it keeps waiting and its
+         * interrupt status is restored before returning.
          *
          * @param future
          * @param duration
@@ -128,45 +273,24 @@ public class FutureOpAliases
          */
         public static <A> ListenableFuture<A> ready(final ListenableFuture<A> future, final Duration duration)
         {
-            final SettableFuture<A> computed = SettableFuture.create();
-
-            addCallback(future, new FutureCallback<A>()
+            try
             {
-                @Override
-                public void onSuccess(A result)
-                {
-                    computed.set(result);
-                }
-
-                @Override
-                public void onFailure(Throwable t)
-                {
-                    computed.setException(t);
-                }
-            }, MoreExecutors.directExecutor());
-
-            final long start = System.nanoTime();
-
-            long currStepNanos = Math.max(1000000, duration.toNanos() / 100000000000L);
-
-            while (!computed.isDone())
+                //blocks on the future's own completion signal, i.e. the waiting thread is parked until
+                //the future completes (and unparks it) or the deadline passes, whichever comes first
+                return immediateFuture(Uninterruptibles.getUninterruptibly(future, duration.toNanos(), NANOSECONDS));
+            }
+            catch (ExecutionException e)
             {
-                final long elapsed = System.nanoTime() - start;
-                final long remaining = duration.toNanos() - elapsed;
-
-                if (remaining <= 0)
-                {
-                    computed.setException(new TimeoutException("Failed to complete for " + duration.toNanos()));
-                    break;
-                }
-
-                LockSupport.parkNanos(Math.min(remaining, currStepNanos));
-
-                currStepNanos = currStepNanos << 1;
-
+                return immediateFailedFuture(e.getCause());
+            }
+            catch (CancellationException e)
+            {
+                return immediateFailedFuture(e);
+            }
+            catch (TimeoutException e)
+            {
+                return immediateFailedFuture(new TimeoutException("Failed to complete for " + duration.toNanos()));
             }
-
-            return computed;
 
         }
 
@@ -0,0 +1,194 @@
+package com.novarto.lang.guava;
+
+import com.google.common.util.concurrent.AbstractFuture;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.text.MessageFormat.format;
+
+/**
+ * Applies an asynchronous function to every element of an iterable, keeping at most maxInFlight of the resulting
+ * futures incomplete at any time. Elements are pulled from the iterator lazily, as earlier futures complete.
+ *
+ * The iterator and the function are only ever invoked by one thread at a time, from within {@link #drain()}. Drain
+ * is guarded by a work-in-progress counter rather than recursion, so futures which complete immediately do not grow
+ * the stack. Apart from the result list, memory is proportional to maxInFlight.
+ *
+ * The traversal fails with the first failure of the function or one of its futures, and starts no new work after
+ * that. Cancelling the traversal cancels the futures which are in flight.
+ */
+final class Traversal<A, B> extends AbstractFuture<List<B>>
+{
+    private final Iterator<? extends A> xs;
+    private final AsyncFunction<? super A, ? extends B> f;
+    private final int maxInFlight;
+    private final boolean ordered;
+
+    private final AtomicInteger wip = new AtomicInteger();
+
+    //only accessed from within drain
+    private boolean exhausted;
+
+    //guarded by this
+    private final List<B> results = new ArrayList<>();
+    private final Map<ListenableFuture<? extends B>, Boolean> inFlight = new IdentityHashMap<>();
+
+    private Traversal(Iterator<? extends A> xs, AsyncFunction<? super A, ? extends B> f, int maxInFlight,
+            boolean ordered)
+    {
+        this.xs = xs;
+        this.f = f;
+        this.maxInFlight = maxInFlight;
+        this.ordered = ordered;
+    }
+
+    static <A, B> ListenableFuture<List<B>> start(Iterable<? extends A> xs, AsyncFunction<? super A, ? extends B> f,
+            int maxInFlight, boolean ordered)
+    {
+        if (maxInFlight <= 0)
+        {
+            throw new IllegalArgumentException(format("maxInFlight must be positive, but was {0}", maxInFlight));
+        }
+        Traversal<A, B> result = new Traversal<>(xs.iterator(), f, maxInFlight, ordered);
+        result.drain();
+        return result;
+    }
+
+    private void drain()
+    {
+        if (wip.getAndIncrement() != 0)
+        {
+            return;
+        }
+        do
+        {
+            launch();
+        }
+        while (wip.decrementAndGet() != 0);
+    }
+
+    private void launch()
+    {
+        while (!isDone())
+        {
+            final int index;
+            synchronized (this)
+            {
+                if (inFlight.size() >= maxInFlight)
+                {
+                    return;
+                }
+                index = results.size();
+            }
+
+            if (exhausted || !xs.hasNext())
+            {
+                exhausted = true;
+                boolean finished;
+                synchronized (this)
+                {
+                    finished = inFlight.isEmpty();
+                }
+                if (finished)
+                {
+                    //completing runs the listeners of the traversal, so it is not done while holding the lock
+                    set(Collections.unmodifiableList(results));
+                }
+                return;
+            }
+
+            if (ordered)
+            {
+                synchronized (this)
+                {
+                    results.add(null);
+                }
+            }
+
+            final ListenableFuture<? extends B> future;
+            try
+            {
+                future = Objects.requireNonNull(f.apply(xs.next()), "AsyncFunction returned null");
+            }
+            catch (Throwable t)
+            {
+                setException(t);
+                return;
+            }
+
+            boolean cancelled;
+            synchronized (this)
+            {
+                //afterDone may already have cancelled everything else which was in flight
+                cancelled = isCancelled();
+                if (!cancelled)
+                {
+                    inFlight.put(future, Boolean.TRUE);
+                }
+            }
+            if (cancelled)
+            {
+                future.cancel(wasInterrupted());
+                return;
+            }
+            future.addListener(() -> complete(future, index), MoreExecutors.directExecutor());
+        }
+    }
+
+    private void complete(ListenableFuture<? extends B> future, int index)
+    {
+        B value;
+        try
+        {
+            value = FutureUtil.getUninterruptibly(future);
+        }
+        catch (ExecutionException e)
+        {
+            setException(e.getCause());
+            return;
+        }
+        catch (Throwable t)
+        {
+            setException(t);
+            return;
+        }
+
+        synchronized (this)
+        {
+            inFlight.remove(future);
+            if (ordered)
+            {
+                results.set(index, value);
+            }
+            else
+            {
+                results.add(value);
+            }
+        }
+        drain();
+    }
+
+    @Override
+    protected void afterDone()
+    {
+        if (!isCancelled())
+        {
+            return;
+        }
+        List<ListenableFuture<? extends B>> toCancel;
+        synchronized (this)
+        {
+            toCancel = new ArrayList<>(inFlight.keySet());
+            inFlight.clear();
+        }
+        for (ListenableFuture<? extends B> x : toCancel)
+        {
+            x.cancel(wasInterrupted());
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.novarto.lang.guava;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import fj.data.Validation;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.fail;
+
+public class CollectTest
+{
+    @Test
+    public void failFastCancelsSiblings() throws Exception
+    {
+        SettableFuture<Integer> a = SettableFuture.create();
+        SettableFuture<Integer> b = SettableFuture.create();
+        SettableFuture<Integer> c = SettableFuture.create();
+        ListenableFuture<List<Integer>> result = FutureOpAliases.collectFailFast(a, b, c);
+
+        a.set(1);
+        b.setException(new IllegalStateException("boom"));
+
+        try
+        {
+            result.get();
+            fail();
+        }
+        catch (ExecutionException e)
+        {
+            assertThat(e.getCause().getMessage(), is("boom"));
+        }
+        assertThat(a.isCancelled(), is(false));
+        assertThat(c.isCancelled(), is(true));
+    }
+
+    @Test
+    public void failFastSuccess() throws Exception
+    {
+        ListenableFuture<List<Integer>> result = FutureOpAliases
+                .collectFailFast(FutureOpAliases.unit(1), FutureOpAliases.unit(2));
+        assertThat(result.get(), is(Arrays.asList(1, 2)));
+    }
+
+    @Test
+    public void settledSuccess() throws Exception
+    {
+        Validation<List<Validation<Throwable, Integer>>, List<Integer>> result = FutureOpAliases
+                .collectSettled(Arrays.asList(FutureOpAliases.unit(1), FutureOpAliases.unit(2))).get();
+
+        assertThat(result.success(), is(Arrays.asList(1, 2)));
+    }
+
+    @Test
+    public void settledPartial() throws Exception
+    {
+        SettableFuture<Integer> a = SettableFuture.create();
+        SettableFuture<Integer> b = SettableFuture.create();
+        SettableFuture<Integer> c = SettableFuture.create();
+        SettableFuture<Integer> d = SettableFuture.create();
+        ListenableFuture<Validation<List<Validation<Throwable, Integer>>, List<Integer>>> result = FutureOpAliases
+                .collectSettled(Arrays.asList(a, b, c, d));
+
+        b.setException(new IllegalStateException("boom"));
+        assertThat(result.isDone(), is(false));
+        a.set(1);
+        c.cancel(false);
+        d.set(4);
+
+        List<Validation<Throwable, Integer>> outcomes = result.get().fail();
+        assertThat(outcomes.size(), is(4));
+        assertThat(outcomes.get(0).success(), is(1));
+        assertThat(outcomes.get(1).fail().getMessage(), is("boom"));
+        assertThat(outcomes.get(2).fail() instanceof CancellationException, is(true));
+        assertThat(outcomes.get(3).success(), is(4));
+    }
+}
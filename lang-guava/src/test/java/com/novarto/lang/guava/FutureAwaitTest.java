@@ -4,6 +4,7 @@ import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -107,4 +108,20 @@ public class FutureAwaitTest
             }
         }, directExecutor());
     }
+
+    @Test
+    public void testInterruptDoesNotAbortWait() throws Exception
+    {
+        final SettableFuture<Integer> later = SettableFuture.create();
+        SERVICE.submit(() -> {
+            Thread.sleep(100);
+            return later.set(42);
+        });
+
+        Thread.currentThread().interrupt();
+        final ListenableFuture<Integer> ready = FutureOpAliases.Await.ready(later, Duration.ofSeconds(5));
+
+        assertThat(Thread.interrupted(), is(true));
+        assertThat(ready.get(), is(42));
+    }
 }
@@ -0,0 +1,121 @@
+package com.novarto.lang.guava;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningScheduledExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.fail;
+
+public class TraverseTest
+{
+    private static final ListeningScheduledExecutorService SERVICE = MoreExecutors
+            .listeningDecorator(Executors.newScheduledThreadPool(8));
+
+    @AfterClass
+    public static void shutdown()
+    {
+        SERVICE.shutdownNow();
+    }
+
+    @Test
+    public void boundedAndOrdered() throws Exception
+    {
+        List<Integer> xs = range(2000);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxSeen = new AtomicInteger();
+
+        List<Integer> result = FutureOpAliases.traverse(xs, x -> {
+            maxSeen.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            return SERVICE.schedule(() -> {
+                inFlight.decrementAndGet();
+                return x * 2;
+            }, ThreadLocalRandom.current().nextInt(100), MICROSECONDS);
+        }, 16).get();
+
+        assertThat(result, is(xs.stream().map(x -> x * 2).collect(Collectors.toList())));
+        assertThat(maxSeen.get() <= 16, is(true));
+    }
+
+    @Test
+    public void unordered() throws Exception
+    {
+        List<Integer> xs = range(2000);
+        List<Integer> result = FutureOpAliases.traverseUnordered(xs, x -> SERVICE
+                .schedule(() -> x, ThreadLocalRandom.current().nextInt(100), MICROSECONDS), 16).get();
+
+        assertThat(result, containsInAnyOrder(xs.toArray()));
+    }
+
+    @Test
+    public void immediateFuturesDoNotGrowTheStack() throws Exception
+    {
+        List<Integer> xs = range(200000);
+        assertThat(FutureOpAliases.traverse(xs, FutureOpAliases::unit, 4).get(), is(xs));
+        assertThat(FutureOpAliases.traverse(new ArrayList<Integer>(), FutureOpAliases::unit, 4).get().isEmpty(),
+                is(true));
+    }
+
+    @Test
+    public void failureStopsNewWork() throws Exception
+    {
+        AtomicInteger started = new AtomicInteger();
+        ListenableFuture<List<Integer>> result = FutureOpAliases.traverse(range(1000), x -> {
+            started.incrementAndGet();
+            return x == 10 ? FutureOpAliases.<Integer>fail("boom") : FutureOpAliases.unit(x);
+        }, 4);
+
+        try
+        {
+            result.get();
+            fail();
+        }
+        catch (ExecutionException e)
+        {
+            assertThat(e.getCause().getMessage(), is("boom"));
+        }
+        assertThat(started.get(), is(11));
+    }
+
+    @Test
+    public void cancelPropagatesToInFlight()
+    {
+        List<SettableFuture<Integer>> started = new ArrayList<>();
+        ListenableFuture<List<Integer>> result = FutureOpAliases.traverse(range(10), x -> {
+            SettableFuture<Integer> future = SettableFuture.create();
+            started.add(future);
+            return future;
+        }, 3);
+
+        assertThat(started.size(), is(3));
+        result.cancel(false);
+        assertThat(started.stream().allMatch(ListenableFuture::isCancelled), is(true));
+        assertThat(started.size(), is(3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxInFlightMustBePositive()
+    {
+        FutureOpAliases.traverse(range(1), FutureOpAliases::unit, 0);
+    }
+
+    private static List<Integer> range(int n)
+    {
+        return IntStream.range(0, n).boxed().collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,116 @@
+package com.novarto.lang;
+
+import fj.P2;
+import fj.data.List;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the hash-based Collections.duplicates against the former pairwise implementation.
+ * The pairwise version is quadratic, therefore it is only measured up to 100k elements; at 1M elements a single
+ * invocation would take hours.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DuplicatesBenchmark
+{
+    public abstract static class Input
+    {
+        List<Integer> xs;
+        java.util.List<Integer> javaXs;
+        Integer[] arr;
+
+        void init(int size)
+        {
+            Random r = new Random(42);
+            arr = new Integer[size];
+            for (int i = 0; i < size; i++)
+            {
+                //roughly 1% duplicates
+                arr[i] = r.nextInt(size * 100);
+            }
+            xs = List.arrayList(arr);
+            javaXs = java.util.Arrays.asList(arr);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class HashInput extends Input
+    {
+        @Param({"1000", "100000", "1000000"})
+        int size;
+
+        @Setup
+        public void setup()
+        {
+            init(size);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class PairwiseInput extends Input
+    {
+        @Param({"1000", "100000"})
+        int size;
+
+        @Setup
+        public void setup()
+        {
+            init(size);
+        }
+    }
+
+    @Benchmark
+    public Object hashFjList(HashInput in)
+    {
+        return Collections.duplicates(in.xs);
+    }
+
+    @Benchmark
+    public Object hashJavaList(HashInput in)
+    {
+        return Collections.duplicateSet(in.javaXs);
+    }
+
+    @Benchmark
+    public Object hashArray(HashInput in)
+    {
+        return Collections.duplicateSet(in.arr);
+    }
+
+    @Benchmark
+    public Object hashPositions(HashInput in)
+    {
+        return Collections.duplicatePositions(in.arr);
+    }
+
+    @Benchmark
+    public Object pairwiseFjList(PairwiseInput in)
+    {
+        return pairwiseDuplicates(in.xs.zipIndex());
+    }
+
+    /**
+     * The implementation of Collections.duplicates prior to the hash-based one, kept here as a baseline.
+     */
+    private static <A> fj.data.Set<A> pairwiseDuplicates(List<P2<A, Integer>> withIndex)
+    {
+        fj.data.HashSet<A> result = fj.data.HashSet.empty();
+        withIndex.forEach(x -> withIndex.forEach(y ->
+        {
+            if (x._2() != y._2() && x._1().equals(y._1()))
+            {
+                result.set(x._1());
+            }
+        }));
+
+        @SuppressWarnings("deprecation") fj.Ord<A> ord = fj.Ord.hashEqualsOrd();
+
+        return fj.data.Set.iterableSet(ord, result);
+    }
+}
@@ -0,0 +1,114 @@
+package com.novarto.lang.denum;
+
+import fj.data.List;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares DynamicEnumFactory.byId, for dense and for sparse ids, against the former boxed HashMap lookup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ByIdBenchmark
+{
+    private static final int SIZE = 1000;
+
+    private int[] denseIds;
+    private int[] sparseIds;
+    private Map<Integer, Dense> denseMap;
+
+    @Setup
+    public void setup()
+    {
+        denseIds = new int[SIZE];
+        sparseIds = new int[SIZE];
+        denseMap = new HashMap<>();
+        for (int i = 0; i < SIZE; i++)
+        {
+            //visit the ids in a scrambled order, so that we do not measure a sequential scan
+            int j = (i * 7919) % SIZE;
+            denseIds[i] = j;
+            sparseIds[i] = Sparse.id(j);
+        }
+        for (Dense x : Dense.F.values())
+        {
+            denseMap.put(x.id, x);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public int hashMap()
+    {
+        int result = 0;
+        for (int id : denseIds)
+        {
+            //the former implementation: a null check, followed by a second lookup
+            Dense x = denseMap.get(id);
+            if (x == null)
+            {
+                throw new IllegalArgumentException();
+            }
+            result += denseMap.get(id).id;
+        }
+        return result;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public int dense()
+    {
+        int result = 0;
+        for (int id : denseIds)
+        {
+            result += Dense.F.byId(id).id;
+        }
+        return result;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public int sparse()
+    {
+        int result = 0;
+        for (int id : sparseIds)
+        {
+            result += Sparse.F.byId(id).id;
+        }
+        return result;
+    }
+
+    public static final class Dense extends DynamicEnum<Dense>
+    {
+        static final DynamicEnumFactory<Dense> F = new DynamicEnumFactory<>(Dense.class,
+                () -> List.range(0, SIZE).map(i -> new Dense(i, "d" + i)));
+
+        private Dense(int id, String name)
+        {
+            super(id, name);
+        }
+    }
+
+    public static final class Sparse extends DynamicEnum<Sparse>
+    {
+        static final DynamicEnumFactory<Sparse> F = new DynamicEnumFactory<>(Sparse.class,
+                () -> List.range(0, SIZE).map(i -> new Sparse(id(i), "s" + i)));
+
+        private Sparse(int id, String name)
+        {
+            super(id, name);
+        }
+
+        static int id(int i)
+        {
+            return i * 104729;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.novarto.lang.denum;
+
+import com.novarto.lang.Collections;
+import fj.F0;
+import fj.data.List;
+import fj.data.Set;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Array;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the construction of the indexes of hundreds of enum types with thousands of values each, comparing the
+ * single pass construction with the former one, which invoked the loader three times and built several intermediate
+ * collections. The loader creates fresh instances on each invocation, as one which parses a file would.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StartupBenchmark
+{
+    @Param({"200"})
+    int types;
+
+    @Param({"1000", "5000"})
+    int valuesPerType;
+
+    private java.util.List<F0<List<Value>>> loaders;
+
+    @Setup
+    public void setup()
+    {
+        loaders = new java.util.ArrayList<>();
+        for (int t = 0; t < types; t++)
+        {
+            String prefix = "type" + t + "_";
+            loaders.add(() -> List.range(0, valuesPerType).map(i -> new Value(i, prefix + i)));
+        }
+    }
+
+    @Benchmark
+    public int singlePass()
+    {
+        int result = 0;
+        for (F0<List<Value>> loader : loaders)
+        {
+            result += DynamicEnumFactory.build(Value.class, loader.f(), null).hashCode();
+        }
+        return result;
+    }
+
+    @Benchmark
+    public int former()
+    {
+        int result = 0;
+        for (F0<List<Value>> loader : loaders)
+        {
+            result += formerConstruction(Value.class, loader).length;
+        }
+        return result;
+    }
+
+    /**
+     * The construction steps of DynamicEnumFactory prior to the single pass one, kept here as a baseline.
+     */
+    @SuppressWarnings("unchecked")
+    private static <A extends DynamicEnum<A>> A[] formerConstruction(Class<A> type, F0<List<A>> loadF)
+    {
+        List<A> allAsList = loadF.f();
+        List<String> namesAsList = allAsList.map(x -> x.name);
+
+        Set<A> duplicates = Collections.duplicates(allAsList);
+        Set<String> duplicateNames = Collections.duplicates(namesAsList);
+        if (!duplicates.isEmpty() || !duplicateNames.isEmpty())
+        {
+            throw new IllegalStateException();
+        }
+
+        Map<Integer, A> byId = Collections.toMapUnique(loadF.f(), x -> x.id, x -> x);
+        Map<String, A> byName = Collections.toMapUnique(loadF.f(), x -> x.name, x -> x);
+
+        return byId.values().toArray((A[]) Array.newInstance(type, byName.size()));
+    }
+
+    public static final class Value extends DynamicEnum<Value>
+    {
+        private Value(int id, String name)
+        {
+            super(id, name);
+        }
+    }
+}
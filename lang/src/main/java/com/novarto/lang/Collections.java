@@ -10,6 +10,7 @@ import java.util.List;
 import java.util.Set;
 
 import static fj.Function.identity;
+import static java.text.MessageFormat.format;
 import static java.util.Arrays.asList;
 
 /**
@@ -139,41 +140,226 @@ public class Collections
     }
 
     /**
-     * Generic function to return the set of duplicates in a collection, according to object equality
+     * Generic function to return the set of duplicates in a collection, according to object equality.
+     * Runs in linear time. The zipIndex function is no longer needed to tell elements apart and is not invoked;
+     * it is retained for source compatibility only.
      */
     public static <A, C extends Iterable<A>, C1 extends Iterable<P2<A, Integer>>> fj.data.Set<A> duplicates(C xs,
             F<C, C1> zipIndex)
     {
+        return toFjSet(duplicateSet(xs));
+    }
+
+    /**
+     * Function to calculate duplicates according to object equality, specialized for fj List
+     */
+    public static <A> fj.data.Set<A> duplicates(fj.data.List<A> xs)
+    {
+        return toFjSet(duplicateSet(xs));
+    }
+
+    /**
+     * Function to calculate duplicates according to object equality, specialized for fj Stream
+     */
+    public static <A> fj.data.Set<A> duplicates(fj.data.Stream<A> xs)
+    {
+        return toFjSet(duplicateSet(xs));
+    }
 
-        fj.data.HashSet<A> result = fj.data.HashSet.empty();
-        C1 withIndex = zipIndex.f(xs);
-        withIndex.forEach(x -> withIndex.forEach(y ->
+    /**
+     * Return the set of duplicates in an arbitrary iterable, according to object equality, in a single hash-based
+     * pass. The result iterates in the order in which the duplicates were first detected.
+     * Has specialized paths for fj List and random access j.u.List.
+     */
+    public static <A> Set<A> duplicateSet(Iterable<A> xs)
+    {
+        if (xs instanceof fj.data.List)
         {
-            if (x._2() != y._2() && x._1().equals(y._1()))
+            return fjListDuplicates((fj.data.List<A>) xs);
+        }
+        else if (xs instanceof List && xs instanceof RandomAccess)
+        {
+            return randomAccessDuplicates((List<A>) xs);
+        }
+        else
+        {
+            Duplicates<A> result = new Duplicates<>(expectedSize(xs));
+            for (A x : xs)
             {
-                result.set(x._1());
+                result.add(x);
             }
-        }));
+            return result.found;
+        }
+    }
 
-        @SuppressWarnings("deprecation") Ord<A> ord = Ord.hashEqualsOrd();
+    /**
+     * Specialized version of duplicateSet for arrays
+     */
+    public static <A> Set<A> duplicateSet(A[] xs)
+    {
+        Duplicates<A> result = new Duplicates<>(hashCapacity(xs.length));
+        for (A x : xs)
+        {
+            result.add(x);
+        }
+        return result.found;
+    }
 
-        return fj.data.Set.iterableSet(ord, result);
+    /**
+     * Return the positions of all duplicates in an arbitrary iterable, according to object equality, in a single
+     * hash-based pass. Every element which occurs more than once is mapped to the ascending, zero-based
+     * indices of all its occurrences (in iteration order). Elements which occur once are not present in the result.
+     */
+    public static <A> Map<A, int[]> duplicatePositions(Iterable<A> xs)
+    {
+        HashMap<A, Integer> firstIndex = new HashMap<>(expectedSize(xs));
+        LinkedHashMap<A, IndexBuffer> positions = new LinkedHashMap<>();
+        int i = 0;
+        for (A x : xs)
+        {
+            addPosition(firstIndex, positions, x, i++);
+        }
+        return toPositionsMap(positions);
     }
 
     /**
-     * Function to calculate duplicates according to object equality, specialized for fj List
+     * Specialized version of duplicatePositions for arrays
      */
-    public static <A> fj.data.Set<A> duplicates(fj.data.List<A> xs)
+    public static <A> Map<A, int[]> duplicatePositions(A[] xs)
     {
-        return duplicates(xs, ys -> ys.zipIndex());
+        HashMap<A, Integer> firstIndex = new HashMap<>(hashCapacity(xs.length));
+        LinkedHashMap<A, IndexBuffer> positions = new LinkedHashMap<>();
+        for (int i = 0; i < xs.length; i++)
+        {
+            addPosition(firstIndex, positions, xs[i], i);
+        }
+        return toPositionsMap(positions);
+    }
+
+    private static <A> Set<A> fjListDuplicates(fj.data.List<A> xs)
+    {
+        Duplicates<A> result = new Duplicates<>(hashCapacity(xs.length()));
+        for (fj.data.List<A> rest = xs; rest.isNotEmpty(); rest = rest.tail())
+        {
+            result.add(rest.head());
+        }
+        return result.found;
+    }
+
+    private static <A> Set<A> randomAccessDuplicates(List<A> xs)
+    {
+        int size = xs.size();
+        Duplicates<A> result = new Duplicates<>(hashCapacity(size));
+        for (int i = 0; i < size; i++)
+        {
+            result.add(xs.get(i));
+        }
+        return result.found;
+    }
+
+    private static <A> void addPosition(HashMap<A, Integer> firstIndex, LinkedHashMap<A, IndexBuffer> positions, A x,
+            int i)
+    {
+        Integer first = firstIndex.putIfAbsent(x, i);
+        if (first != null)
+        {
+            IndexBuffer buf = positions.get(x);
+            if (buf == null)
+            {
+                buf = new IndexBuffer();
+                buf.add(first);
+                positions.put(x, buf);
+            }
+            buf.add(i);
+        }
+    }
+
+    private static <A> Map<A, int[]> toPositionsMap(LinkedHashMap<A, IndexBuffer> positions)
+    {
+        Map<A, int[]> result = new LinkedHashMap<>(hashCapacity(positions.size()));
+        positions.forEach((k, v) -> result.put(k, Arrays.copyOf(v.xs, v.size)));
+        return result;
     }
 
     /**
-     * Function to calculate duplicates according to object equality, specialized for fj Stream
+     * The elements need not have a natural order, and ordering them by hash code, as Ord.hashEqualsOrd() does, is
+     * not a total order once hash codes collide. So the set is ordered by the order in which the duplicates were
+     * detected, which is the iteration order of xs. An element which is not among xs follows all of them, so it can be
+     * looked up, or inserted, but there is no order between two such elements: comparing them throws
+     * IllegalArgumentException, unless they are equal.
      */
-    public static <A> fj.data.Set<A> duplicates(fj.data.Stream<A> xs)
+    private static <A> fj.data.Set<A> toFjSet(Set<A> xs)
     {
-        return duplicates(xs, ys -> ys.zipIndex());
+        HashMap<A, Integer> rank = new HashMap<>(hashCapacity(xs.size()));
+        for (A x : xs)
+        {
+            rank.put(x, rank.size());
+        }
+        Ord<A> ord = Ord.ord((a, b) -> {
+            if (a.equals(b))
+            {
+                return Ordering.EQ;
+            }
+            int ra = rank.getOrDefault(a, Integer.MAX_VALUE);
+            int rb = rank.getOrDefault(b, Integer.MAX_VALUE);
+            if (ra == Integer.MAX_VALUE && rb == Integer.MAX_VALUE)
+            {
+                throw new IllegalArgumentException(
+                        format("neither {0} nor {1} is one of the duplicates, they cannot be ordered", a, b));
+            }
+            return Ordering.fromInt(Integer.compare(ra, rb));
+        });
+        return fj.data.Set.iterableSet(ord, xs);
+    }
+
+    /**
+     * The capacity a j.u.HashMap / j.u.HashSet needs in order to hold the given number of elements without rehashing
+     */
+    private static int hashCapacity(int expectedSize)
+    {
+        return (int) (expectedSize / 0.75f) + 1;
+    }
+
+    private static int expectedSize(Iterable<?> xs)
+    {
+        return xs instanceof Collection ? hashCapacity(((Collection) xs).size()) : 16;
+    }
+
+    /**
+     * Collects the elements seen more than once, in the order in which they were first detected
+     */
+    private static final class Duplicates<A>
+    {
+        private final java.util.HashSet<A> seen;
+        private final Set<A> found = new LinkedHashSet<>();
+
+        private Duplicates(int capacity)
+        {
+            this.seen = new java.util.HashSet<>(capacity);
+        }
+
+        private void add(A x)
+        {
+            if (!seen.add(x))
+            {
+                found.add(x);
+            }
+        }
+    }
+
+    private static final class IndexBuffer
+    {
+        private int[] xs = new int[2];
+        private int size;
+
+        private void add(int x)
+        {
+            if (size == xs.length)
+            {
+                xs = Arrays.copyOf(xs, size << 1);
+            }
+            xs[size++] = x;
+        }
     }
 
     @SafeVarargs @SuppressWarnings("varargs")
@@ -1,6 +1,9 @@
 package com.novarto.lang;
 
+import java.lang.reflect.InvocationTargetException;
+import java.util.Optional;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -49,4 +52,33 @@ public class ConcurrentUtil
         return service.isTerminated();
     }
 
+    /**
+     * Create an executor which starts a new virtual thread for each task, if the running JDK supports virtual threads
+     * (Java 21 and later, or earlier versions with preview features enabled). Since this library targets Java 8,
+     * the executor is looked up reflectively.
+     *
+     * @return the executor, or empty if virtual threads are not available
+     */
+    public static Optional<ExecutorService> newVirtualThreadPerTaskExecutor()
+    {
+        try
+        {
+            return Optional.of((ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null));
+        }
+        catch (NoSuchMethodException | IllegalAccessException e)
+        {
+            return Optional.empty();
+        }
+        catch (InvocationTargetException e)
+        {
+            //preview features not enabled
+            if (e.getCause() instanceof UnsupportedOperationException)
+            {
+                return Optional.empty();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
 }
@@ -0,0 +1,139 @@
+package com.novarto.lang.crypto;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+import static java.text.MessageFormat.format;
+
+/**
+ * The outcome of calibrating the cost of a hash algorithm on the current machine: the number of iterations which
+ * takes a target time per hash, and the throughput that implies. See
+ * {@link PasswordHasher#calibrate(HashAlgorithm, int, Duration)}.
+ *
+ * The figures are those of a single thread. The throughput of a machine is at most that of a thread times the
+ * number of cores, and is usually lower with hyper-threading, or once the cores run hot.
+ */
+public final class Calibration
+{
+    private static final int SAMPLES = 3;
+    private static final int MAX_ROUNDS = 5;
+    private static final long WARMUP_NANOS = 300_000_000L;
+
+    private final HashAlgorithm algorithm;
+    private final int hashSize;
+    private final int iterations;
+    private final long nanosPerHash;
+
+    private Calibration(HashAlgorithm algorithm, int hashSize, int iterations, long nanosPerHash)
+    {
+        this.algorithm = algorithm;
+        this.hashSize = hashSize;
+        this.iterations = iterations;
+        this.nanosPerHash = nanosPerHash;
+    }
+
+    static Calibration run(HashAlgorithm algorithm, int hashSize, Duration target)
+    {
+        long targetNanos = target.toNanos();
+        if (targetNanos <= 0 || hashSize <= 0)
+        {
+            throw new IllegalArgumentException(
+                    format("target and hash size must be positive, but were {0} and {1}", target, hashSize));
+        }
+        byte[] salt = new byte[16];
+        byte[] out = new byte[hashSize];
+
+        //warm up, so that compiled code is measured rather than the interpreter
+        long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+        while (System.nanoTime() - warmupEnd < 0)
+        {
+            time(algorithm, 1000, salt, out);
+        }
+
+        //the time is close to proportional to the iterations, so scale them until they meet the target
+        int iterations = 1000;
+        long nanos = time(algorithm, iterations, salt, out);
+        for (int round = 0; round < MAX_ROUNDS; round++)
+        {
+            iterations = scale(iterations, nanos, targetNanos);
+            nanos = median(algorithm, iterations, salt, out);
+            if (Math.abs(nanos - targetNanos) <= targetNanos / 20)
+            {
+                break;
+            }
+        }
+        return new Calibration(algorithm, hashSize, iterations, nanos);
+    }
+
+    private static int scale(int iterations, long nanos, long targetNanos)
+    {
+        double scaled = (double) iterations * targetNanos / Math.max(1, nanos);
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, Math.round(scaled)));
+    }
+
+    private static long median(HashAlgorithm algorithm, int iterations, byte[] salt, byte[] out)
+    {
+        long[] samples = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++)
+        {
+            samples[i] = time(algorithm, iterations, salt, out);
+        }
+        Arrays.sort(samples);
+        return samples[SAMPLES / 2];
+    }
+
+    private static long time(HashAlgorithm algorithm, int iterations, byte[] salt, byte[] out)
+    {
+        long start = System.nanoTime();
+        algorithm.derive("calibration password", salt, 0, salt.length, iterations, out, 0, out.length);
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * The algorithm calibrated
+     */
+    public HashAlgorithm algorithm()
+    {
+        return algorithm;
+    }
+
+    /**
+     * The size of the hash calibrated for, in bytes
+     */
+    public int hashSize()
+    {
+        return hashSize;
+    }
+
+    /**
+     * The number of iterations which takes the target time per hash
+     */
+    public int iterations()
+    {
+        return iterations;
+    }
+
+    /**
+     * The measured time per hash with {@link #iterations()}
+     */
+    public Duration timePerHash()
+    {
+        return Duration.ofNanos(nanosPerHash);
+    }
+
+    /**
+     * The number of hashes, or password validations, which a single core can compute per second with
+     * {@link #iterations()}
+     */
+    public double hashesPerSecondPerCore()
+    {
+        return 1e9 / Math.max(1, nanosPerHash);
+    }
+
+    @Override
+    public String toString()
+    {
+        return format("{0} with {1} byte hashes: {2} iterations take {3} ms per hash, {4} hashes per second per core",
+                algorithm.id(), hashSize, iterations, nanosPerHash / 1e6, hashesPerSecondPerCore());
+    }
+}
@@ -0,0 +1,136 @@
+package com.novarto.lang.crypto;
+
+import java.util.Base64;
+
+import static java.text.MessageFormat.format;
+
+/**
+ * The versioned, self-describing format of password hashes:
+ *
+ * <pre>
+ *     $&lt;algorithm id&gt;$v=1$i=&lt;iterations&gt;$&lt;salt&gt;$&lt;hash&gt;
+ * </pre>
+ *
+ * The salt and the hash are in Base64 without padding, so their sizes are implied by their lengths. This follows the
+ * PHC string format, so the hashes are recognisable by other tools.
+ *
+ * Parsing only locates the parts of a hash; it neither copies nor decodes them.
+ */
+final class EncodedHash
+{
+    private static final String VERSION = "v=1";
+
+    final HashAlgorithm algorithm;
+    final int iterations;
+    final int saltFrom;
+    final int saltTo;
+    final int hashFrom;
+    final int hashTo;
+
+    private EncodedHash(HashAlgorithm algorithm, int iterations, int saltFrom, int saltTo, int hashFrom, int hashTo)
+    {
+        this.algorithm = algorithm;
+        this.iterations = iterations;
+        this.saltFrom = saltFrom;
+        this.saltTo = saltTo;
+        this.hashFrom = hashFrom;
+        this.hashTo = hashTo;
+    }
+
+    static boolean isEncoded(String s)
+    {
+        return s.startsWith("$");
+    }
+
+    static String encode(HashAlgorithm algorithm, int iterations, byte[] salt, byte[] hash)
+    {
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+        return "$" + algorithm.id() + "$" + VERSION + "$i=" + iterations + "$" + base64.encodeToString(salt) + "$" +
+                base64.encodeToString(hash);
+    }
+
+    /**
+     * Locate the parts of the given hash
+     *
+     * @param known the algorithms which may have produced it
+     * @throws IllegalArgumentException if the hash is malformed, of another version, or of an unknown algorithm
+     */
+    static EncodedHash parse(String s, HashAlgorithm[] known)
+    {
+        int idEnd = s.indexOf('$', 1);
+        int versionEnd = idEnd < 0 ? -1 : s.indexOf('$', idEnd + 1);
+        int iterationsEnd = versionEnd < 0 ? -1 : s.indexOf('$', versionEnd + 1);
+        int saltEnd = iterationsEnd < 0 ? -1 : s.indexOf('$', iterationsEnd + 1);
+        if (!isEncoded(s) || saltEnd < 0 || s.indexOf('$', saltEnd + 1) >= 0)
+        {
+            throw new IllegalArgumentException("not a versioned hash: expected $<algorithm>$v=<version>$i=<iterations>"
+                    + "$<salt>$<hash>");
+        }
+
+        HashAlgorithm algorithm = null;
+        for (HashAlgorithm x : known)
+        {
+            String id = x.id();
+            if (id.length() == idEnd - 1 && s.regionMatches(1, id, 0, id.length()))
+            {
+                algorithm = x;
+                break;
+            }
+        }
+        if (algorithm == null)
+        {
+            throw new IllegalArgumentException(format("unknown hash algorithm {0}", s.substring(1, idEnd)));
+        }
+        if (versionEnd - idEnd - 1 != VERSION.length() || !s.regionMatches(idEnd + 1, VERSION, 0, VERSION.length()))
+        {
+            throw new IllegalArgumentException(
+                    format("unsupported hash version {0}", s.substring(idEnd + 1, versionEnd)));
+        }
+        if (!s.startsWith("i=", versionEnd + 1))
+        {
+            throw new IllegalArgumentException("missing iterations");
+        }
+        int iterations = parseIterations(s, versionEnd + 3, iterationsEnd);
+        if (saltEnd + 1 == s.length())
+        {
+            throw new IllegalArgumentException("empty hash");
+        }
+        return new EncodedHash(algorithm, iterations, iterationsEnd + 1, saltEnd, saltEnd + 1, s.length());
+    }
+
+    private static int parseIterations(String s, int from, int to)
+    {
+        long result = 0;
+        for (int i = from; i < to && result <= Integer.MAX_VALUE; i++)
+        {
+            int d = s.charAt(i) - '0';
+            if (d < 0 || d > 9)
+            {
+                result = -1;
+                break;
+            }
+            result = result * 10 + d;
+        }
+        if (result <= 0 || result > Integer.MAX_VALUE)
+        {
+            throw new IllegalArgumentException(format("invalid iterations {0}", s.substring(from, to)));
+        }
+        return (int) result;
+    }
+
+    /**
+     * The size of the salt in bytes
+     */
+    int saltLength()
+    {
+        return (saltTo - saltFrom) * 3 / 4;
+    }
+
+    /**
+     * The size of the hash in bytes
+     */
+    int hashLength()
+    {
+        return (hashTo - hashFrom) * 3 / 4;
+    }
+}
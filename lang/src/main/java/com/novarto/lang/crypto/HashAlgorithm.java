@@ -0,0 +1,41 @@
+package com.novarto.lang.crypto;
+
+/**
+ * A key derivation function for password hashes. See {@link PasswordHasher}.
+ *
+ * Versioned hashes record the id of the algorithm which produced them, so an id must never change once hashes with it
+ * have been stored, and different algorithms must have different ids. An id consists of lower case ASCII letters,
+ * digits and '-'.
+ *
+ * Implementations must be thread-safe.
+ */
+public interface HashAlgorithm
+{
+    /**
+     * PBKDF2 with HMAC-SHA1, the algorithm of hashes in the legacy hex format
+     */
+    HashAlgorithm PBKDF2_SHA1 = new Pbkdf2("pbkdf2-sha1", "SHA-1", 64);
+
+    /**
+     * PBKDF2 with HMAC-SHA256
+     */
+    HashAlgorithm PBKDF2_SHA256 = new Pbkdf2("pbkdf2-sha256", "SHA-256", 64);
+
+    /**
+     * PBKDF2 with HMAC-SHA512
+     */
+    HashAlgorithm PBKDF2_SHA512 = new Pbkdf2("pbkdf2-sha512", "SHA-512", 128);
+
+    /**
+     * The identifier of this algorithm in versioned hashes
+     */
+    String id();
+
+    /**
+     * Derive length bytes from the password, the salt and the cost, into out starting at outOffset
+     *
+     * @param iterations the cost, which must be positive
+     */
+    void derive(CharSequence password, byte[] salt, int saltOffset, int saltLength, int iterations, byte[] out,
+            int outOffset, int length);
+}
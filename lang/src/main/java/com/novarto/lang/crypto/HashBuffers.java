@@ -0,0 +1,46 @@
+package com.novarto.lang.crypto;
+
+/**
+ * Buffers of the calling thread, into which stored hashes are decoded and keys are derived when validating a password,
+ * so that validation does not allocate. The contents of a buffer are overwritten by the next call which obtains it.
+ */
+final class HashBuffers
+{
+    private static final ThreadLocal<HashBuffers> CURRENT = ThreadLocal.withInitial(HashBuffers::new);
+
+    private byte[] decoded = new byte[128];
+    private byte[] derived = new byte[64];
+
+    private HashBuffers()
+    {
+    }
+
+    static HashBuffers current()
+    {
+        return CURRENT.get();
+    }
+
+    /**
+     * A buffer of at least the given size, to decode a stored hash into
+     */
+    byte[] decoded(int size)
+    {
+        if (decoded.length < size)
+        {
+            decoded = new byte[size];
+        }
+        return decoded;
+    }
+
+    /**
+     * A buffer of at least the given size, to derive a key into
+     */
+    byte[] derived(int size)
+    {
+        if (derived.length < size)
+        {
+            derived = new byte[size];
+        }
+        return derived;
+    }
+}
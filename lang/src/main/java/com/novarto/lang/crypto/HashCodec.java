@@ -0,0 +1,117 @@
+package com.novarto.lang.crypto;
+
+import java.util.Arrays;
+
+import static java.text.MessageFormat.format;
+
+/**
+ * Decoding of the hex and Base64 text of stored hashes straight from a CharSequence into a given buffer, so that
+ * verifying a password does not allocate intermediate strings or arrays.
+ */
+final class HashCodec
+{
+    private static final int[] BASE64 = new int[128];
+
+    static
+    {
+        Arrays.fill(BASE64, -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++)
+        {
+            BASE64[alphabet.charAt(i)] = i;
+        }
+    }
+
+    private HashCodec()
+    {
+    }
+
+    /**
+     * Decode the hex digits of s from index from (inclusive) to index to (exclusive) into out, starting at
+     * outOffset, which must have room for them
+     *
+     * @return the number of bytes decoded
+     */
+    static int decodeHex(CharSequence s, int from, int to, byte[] out, int outOffset)
+    {
+        if (((to - from) & 1) != 0)
+        {
+            throw new IllegalArgumentException(format("hex of odd length {0}", to - from));
+        }
+        int j = outOffset;
+        for (int i = from; i < to; i += 2)
+        {
+            out[j++] = (byte) (hexDigit(s, i) << 4 | hexDigit(s, i + 1));
+        }
+        return j - outOffset;
+    }
+
+    private static int hexDigit(CharSequence s, int i)
+    {
+        int d = Character.digit(s.charAt(i), 16);
+        if (d < 0)
+        {
+            throw new IllegalArgumentException(format("invalid hex digit ''{0}'' at {1}", s.charAt(i), i));
+        }
+        return d;
+    }
+
+    /**
+     * The maximum number of bytes which the standard Base64 text s decodes to
+     */
+    static int maxBase64Length(CharSequence s)
+    {
+        return (s.length() + 3) / 4 * 3;
+    }
+
+    /**
+     * Decode the standard Base64 text s, with or without padding, into out, which must have room for
+     * {@link #maxBase64Length(CharSequence)} bytes
+     *
+     * @return the number of bytes decoded
+     */
+    static int decodeBase64(CharSequence s, byte[] out)
+    {
+        return decodeBase64(s, 0, s.length(), out, 0);
+    }
+
+    /**
+     * Decode the standard Base64 text of s from index from (inclusive) to index to (exclusive), with or without
+     * padding, into out, starting at outOffset, which must have room for it
+     *
+     * @return the number of bytes decoded
+     */
+    static int decodeBase64(CharSequence s, int from, int to, byte[] out, int outOffset)
+    {
+        int n = to;
+        while (n > from && s.charAt(n - 1) == '=')
+        {
+            n--;
+        }
+        int j = outOffset;
+        int bits = 0;
+        int acc = 0;
+        for (int i = from; i < n; i++)
+        {
+            char c = s.charAt(i);
+            int v = c < 128 ? BASE64[c] : -1;
+            if (v < 0)
+            {
+                throw new IllegalArgumentException(format("invalid Base64 character ''{0}'' at {1}", c, i));
+            }
+            acc = acc << 6 | v;
+            bits += 6;
+            if (bits >= 8)
+            {
+                bits -= 8;
+                out[j++] = (byte) (acc >> bits);
+                acc &= (1 << bits) - 1;
+            }
+        }
+        if (bits >= 6)
+        {
+            throw new IllegalArgumentException(format("truncated Base64 of length {0}", to - from));
+        }
+        return j - outOffset;
+    }
+}
@@ -0,0 +1,197 @@
+package com.novarto.lang.crypto;
+
+import fj.F;
+import fj.F0;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.text.MessageFormat.format;
+
+/**
+ * A bounded pool of threads dedicated to key stretching, for the asynchronous and bulk operations of
+ * {@link PasswordHasher}.
+ *
+ * Key stretching is CPU-bound, so the pool has a fixed number of threads, by default one per core, and a queue of
+ * bounded depth. Once the queue is full, further work is rejected right away rather than piling up: the future
+ * returned fails with a {@link RejectedExecutionException}. During a login storm, this sheds load instead of letting
+ * latency grow without bound.
+ *
+ * The threads are daemon threads. A pool can be shut down via {@link #close()}; the pool returned by
+ * {@link #common()} must not be.
+ */
+public final class HashingPool implements AutoCloseable
+{
+    private static final AtomicInteger POOLS = new AtomicInteger();
+
+    private final ThreadPoolExecutor executor;
+    private final int threads;
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * A pool with a thread per core, and a queue depth of 64 per thread
+     */
+    public HashingPool()
+    {
+        this(Runtime.getRuntime().availableProcessors(), 64 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param threads       the number of hashing threads
+     * @param maxQueueDepth the maximum number of tasks waiting for a thread, beyond which tasks are rejected
+     */
+    public HashingPool(int threads, int maxQueueDepth)
+    {
+        if (threads <= 0 || maxQueueDepth <= 0)
+        {
+            throw new IllegalArgumentException(
+                    format("threads and maxQueueDepth must be positive, but were {0} and {1}", threads, maxQueueDepth));
+        }
+        this.threads = threads;
+        int pool = POOLS.incrementAndGet();
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.NANOSECONDS,
+                new ArrayBlockingQueue<>(maxQueueDepth), r -> {
+            Thread t = new Thread(r, "password-hasher-" + pool + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * A pool shared by the asynchronous operations of password hashers which are not given one. It is created on
+     * first use, with the default settings.
+     */
+    public static HashingPool common()
+    {
+        return Common.INSTANCE;
+    }
+
+    private static final class Common
+    {
+        private static final HashingPool INSTANCE = new HashingPool();
+    }
+
+    /**
+     * The number of hashing threads
+     */
+    public int threads()
+    {
+        return threads;
+    }
+
+    /**
+     * The number of tasks currently waiting for a thread
+     */
+    public int queueDepth()
+    {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * The number of tasks accepted so far. A bulk operation submits up to one task per thread.
+     */
+    public long submitted()
+    {
+        return submitted.sum();
+    }
+
+    /**
+     * The number of tasks rejected so far, because the queue was full or the pool was shut down
+     */
+    public long rejected()
+    {
+        return rejected.sum();
+    }
+
+    /**
+     * The number of tasks completed so far
+     */
+    public long completed()
+    {
+        return executor.getCompletedTaskCount();
+    }
+
+    /**
+     * Shut the pool down. Tasks already accepted are still completed.
+     */
+    @Override
+    public void close()
+    {
+        executor.shutdown();
+    }
+
+    /**
+     * Compute f on a hashing thread
+     */
+    <A> CompletableFuture<A> submit(F0<A> f)
+    {
+        CompletableFuture<A> result = new CompletableFuture<>();
+        try
+        {
+            executor.execute(() -> {
+                try
+                {
+                    result.complete(f.f());
+                }
+                catch (Throwable t)
+                {
+                    result.completeExceptionally(t);
+                }
+            });
+            submitted.increment();
+        }
+        catch (RejectedExecutionException e)
+        {
+            rejected.increment();
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Apply f to every element of xs, in parallel on all the hashing threads. The list is split into as many
+     * contiguous slices as there are threads, each of which is a single task, so a batch of any size takes at most
+     * that many places in the queue.
+     *
+     * @return the results, in order. The future fails if f throws or if any slice is rejected.
+     */
+    <A, B> CompletableFuture<List<B>> map(List<A> xs, F<A, B> f)
+    {
+        int n = xs.size();
+        if (n == 0)
+        {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+        int slices = Math.min(threads, n);
+        Object[] results = new Object[n];
+        List<CompletableFuture<?>> tasks = new ArrayList<>(slices);
+        for (int s = 0; s < slices; s++)
+        {
+            int from = (int) ((long) n * s / slices);
+            int to = (int) ((long) n * (s + 1) / slices);
+            tasks.add(submit(() -> {
+                for (int i = from; i < to; i++)
+                {
+                    results[i] = f.f(xs.get(i));
+                }
+                return null;
+            }));
+        }
+        return CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).thenApply(x -> {
+            @SuppressWarnings("unchecked")
+            List<B> values = (List<B>) Arrays.asList(results);
+            return Collections.unmodifiableList(values);
+        });
+    }
+}
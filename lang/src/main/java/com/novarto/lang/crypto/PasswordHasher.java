@@ -1,23 +1,71 @@
 package com.novarto.lang.crypto;
 
-import javax.crypto.SecretKeyFactory;
-import javax.crypto.spec.PBEKeySpec;
+import fj.P2;
+
 import javax.xml.bind.DatatypeConverter;
-import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
-import java.security.spec.InvalidKeySpecException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static java.text.MessageFormat.format;
 
 /**
+ * Hashes passwords with a key derivation function, PBKDF2 by default, and validates passwords against such hashes.
+ *
+ * Hashes are produced in one of these formats:
+ * <ul>
+ *     <li>versioned: self-describing, recording the algorithm, the iterations and, via their lengths, the sizes of
+ *     the salt and the hash; see {@link #toVersionedHash(String)}. This is the format to store new hashes in, and
+ *     the one the asynchronous and bulk operations produce.</li>
+ *     <li>legacy hex: the hash and the salt in hex, separated by ':', always PBKDF2 with HMAC-SHA1 and the legacy
+ *     iterations; produced by {@link #toHash(String)} only for compatibility with existing stores</li>
+ *     <li>binary, or binary as Base64: compact, but the algorithm and iterations must be those of the hasher; see
+ *     {@link #toBinaryHash(String)}</li>
+ * </ul>
+ *
+ * {@link #validatePassword(String, String)} accepts both versioned and legacy hex hashes, so the cost of new hashes
+ * can be raised, or the algorithm changed, while stored hashes keep validating. Stored hashes can then be upgraded
+ * on login, when the password is at hand:
+ *
+ * <pre>
+ *     if (hasher.validatePassword(password, stored) &amp;&amp; hasher.needsRehash(stored))
+ *     {
+ *         store(hasher.toVersionedHash(password));
+ *     }
+ * </pre>
+ *
  * @author bobbymicroby
  */
 public class PasswordHasher
 {
+    private static final HashAlgorithm[] BUILT_IN = {HashAlgorithm.PBKDF2_SHA1, HashAlgorithm.PBKDF2_SHA256,
+            HashAlgorithm.PBKDF2_SHA512};
+
+    /**
+     * Seeding a new SecureRandom may block on entropy, so each thread keeps one, which also avoids contending on a
+     * shared instance
+     */
+    private static final ThreadLocal<SecureRandom> RANDOM = ThreadLocal.withInitial(SecureRandom::new);
+
+    /**
+     * Stored hashes shorter than this, unless this hasher produces shorter ones itself, are rejected as truncated:
+     * comparing a few bytes would let a wrong password pass with a high probability
+     */
+    private static final int MIN_HASH_SIZE = 16;
+
+    private final HashAlgorithm algorithm;
     private final int saltSize;
     private final int hashSize;
     private final int hashStrechIterations;
+    private final int legacyIterations;
+    private final HashAlgorithm[] known;
 
     /**
-     * More then 24 bytes for hash and 24 bytes for salt is unreasonable As well as using more then 1000 key streches
+     * More then 24 bytes for hash and 24 bytes for salt is unreasonable. The number of key streches should be as high
+     * as the latency budget of a login allows; see {@link #calibrate(HashAlgorithm, int, Duration)}.
      *
      * @param saltSize             size of the salt in bytes
      * @param hashSize             size of the hash in bytes
@@ -27,20 +75,211 @@ public class PasswordHasher
      */
     public PasswordHasher(int saltSize, int hashSize, int hashStrechIterations)
     {
+        this(HashAlgorithm.PBKDF2_SHA1, saltSize, hashSize, hashStrechIterations, hashStrechIterations);
+    }
+
+    /**
+     * A hasher which hashes with the given algorithm. Legacy hex hashes are validated with the same number of
+     * iterations.
+     *
+     * @param algorithm            the algorithm of new hashes
+     * @param saltSize             size of the salt in bytes
+     * @param hashSize             size of the hash in bytes
+     * @param hashStrechIterations number of key strech iterations of new hashes
+     */
+    public PasswordHasher(HashAlgorithm algorithm, int saltSize, int hashSize, int hashStrechIterations)
+    {
+        this(algorithm, saltSize, hashSize, hashStrechIterations, hashStrechIterations);
+    }
+
+    /**
+     * A hasher which hashes with the given algorithm, and validates legacy hex hashes with the given, possibly lower,
+     * number of iterations they were produced with
+     *
+     * @param algorithm            the algorithm of new hashes
+     * @param saltSize             size of the salt in bytes
+     * @param hashSize             size of the hash in bytes
+     * @param hashStrechIterations number of key strech iterations of new hashes
+     * @param legacyIterations     number of key strech iterations of legacy hex hashes
+     */
+    public PasswordHasher(HashAlgorithm algorithm, int saltSize, int hashSize, int hashStrechIterations,
+            int legacyIterations)
+    {
+        if (!algorithm.id().matches("[a-z0-9-]+"))
+        {
+            throw new IllegalArgumentException(format("invalid algorithm id {0}", algorithm.id()));
+        }
+        if (saltSize < 0 || hashSize <= 0 || hashStrechIterations <= 0 || legacyIterations <= 0)
+        {
+            throw new IllegalArgumentException(format("invalid salt size {0}, hash size {1} or iterations {2}, {3}",
+                    saltSize, hashSize, hashStrechIterations, legacyIterations));
+        }
+        this.algorithm = algorithm;
         this.saltSize = saltSize;
         this.hashSize = hashSize;
         this.hashStrechIterations = hashStrechIterations;
+        this.legacyIterations = legacyIterations;
+        this.known = known(algorithm);
+    }
+
+    /**
+     * The built-in algorithms, and the given one if it is not built-in
+     */
+    private static HashAlgorithm[] known(HashAlgorithm algorithm)
+    {
+        for (HashAlgorithm x : BUILT_IN)
+        {
+            if (x == algorithm)
+            {
+                return BUILT_IN;
+            }
+            if (x.id().equals(algorithm.id()))
+            {
+                throw new IllegalArgumentException(format("the id {0} is that of a built-in algorithm", x.id()));
+            }
+        }
+        HashAlgorithm[] result = Arrays.copyOf(BUILT_IN, BUILT_IN.length + 1);
+        result[BUILT_IN.length] = algorithm;
+        return result;
     }
 
+    /**
+     * Find the number of iterations of the given algorithm which take the given target time per hash on the current
+     * machine, by measuring it. Use the result to configure a hasher, e.g.
+     * {@code new PasswordHasher(algorithm, 16, hashSize, calibrate(algorithm, hashSize, target).iterations())},
+     * and its throughput to size the machines which validate passwords.
+     *
+     * Calibration runs on the calling thread, and takes several times the target time, as it warms up, and repeats
+     * each measurement. Run it on a machine like the ones which will validate passwords, and while that machine is
+     * otherwise idle.
+     *
+     * @param algorithm
+     * @param hashSize  size of the hash in bytes
+     * @param target    the time a hash should take
+     * @return
+     */
+    public static Calibration calibrate(HashAlgorithm algorithm, int hashSize, Duration target)
+    {
+        return Calibration.run(algorithm, hashSize, target);
+    }
+
+    /**
+     * Validate a password against a versioned hash, as produced by {@link #toVersionedHash(String)}, or a legacy hex
+     * hash, as produced by {@link #toHash(String)}. The hash is decoded and the key stretched in reusable buffers,
+     * so validation produces next to no garbage, whatever the number of iterations.
+     *
+     * The stored hash may be of another size than the hashes of this hasher, but not shorter than 16 bytes, or than
+     * those of this hasher if they are shorter.
+     *
+     * @param password
+     * @param correctHash
+     * @return
+     * @throws IllegalArgumentException if the hash is malformed or truncated, or of an unknown algorithm
+     */
     public boolean validatePassword(String password, String correctHash)
     {
-        String[] params = correctHash.split(":");
-        byte[] hash = fromHex(params[0]);
-        byte[] salt = fromHex(params[1]);
-        byte[] testHash = hash(password, salt);
+        byte[] buffer = HashBuffers.current().decoded(correctHash.length());
+        if (EncodedHash.isEncoded(correctHash))
+        {
+            EncodedHash parsed = EncodedHash.parse(correctHash, known);
+            int saltLength = HashCodec.decodeBase64(correctHash, parsed.saltFrom, parsed.saltTo, buffer, 0);
+            int hashLength = HashCodec.decodeBase64(correctHash, parsed.hashFrom, parsed.hashTo, buffer, saltLength);
+            checkLength(hashLength);
+            return verify(parsed.algorithm, password, buffer, 0, saltLength, parsed.iterations, saltLength,
+                    hashLength);
+        }
+
+        int colon = correctHash.indexOf(':');
+        if (colon < 0)
+        {
+            throw new IllegalArgumentException("not a hash: missing ':'");
+        }
+        int hashLength = HashCodec.decodeHex(correctHash, 0, colon, buffer, 0);
+        int saltLength = HashCodec.decodeHex(correctHash, colon + 1, correctHash.length(), buffer, hashLength);
+        checkLength(hashLength);
+        return verify(HashAlgorithm.PBKDF2_SHA1, password, buffer, hashLength, saltLength, legacyIterations, 0,
+                hashLength);
+    }
+
+    /**
+     * Validate a password against a hash in binary format, as produced by {@link #toBinaryHash(String)}
+     *
+     * @param password
+     * @param correctHash
+     * @return
+     * @throws IllegalArgumentException if the hash is malformed, or its size is not that of the hashes of this hasher
+     */
+    public boolean validatePassword(String password, byte[] correctHash)
+    {
+        return validateBinary(password, correctHash, correctHash.length);
+    }
+
+    /**
+     * Validate a password against a hash in Base64 format, as produced by {@link #toBase64Hash(String)}
+     *
+     * @param password
+     * @param correctHash
+     * @return
+     * @throws IllegalArgumentException if the hash is malformed, or its size is not that of the hashes of this hasher
+     */
+    public boolean validatePasswordBase64(String password, String correctHash)
+    {
+        byte[] buffer = HashBuffers.current().decoded(HashCodec.maxBase64Length(correctHash));
+        return validateBinary(password, buffer, HashCodec.decodeBase64(correctHash, buffer));
+    }
+
+    /**
+     * Whether a stored hash, which is valid, should be replaced with a new one produced by
+     * {@link #toVersionedHash(String)}: that is, if it is a legacy hex hash, or if its algorithm, iterations, salt
+     * size or hash size differ from those of this hasher.
+     *
+     * @param correctHash
+     * @return
+     * @throws IllegalArgumentException if the hash is a malformed versioned hash, or of an unknown algorithm
+     */
+    public boolean needsRehash(String correctHash)
+    {
+        if (!EncodedHash.isEncoded(correctHash))
+        {
+            return true;
+        }
+        EncodedHash parsed = EncodedHash.parse(correctHash, known);
+        return parsed.algorithm != algorithm || parsed.iterations != hashStrechIterations ||
+                parsed.saltLength() != saltSize || parsed.hashLength() != hashSize;
+    }
+
+    private boolean validateBinary(String password, byte[] correctHash, int length)
+    {
+        int saltLength = length == 0 ? -1 : correctHash[0] & 0xFF;
+        if (saltLength < 0 || 1 + saltLength + hashSize != length)
+        {
+            throw new IllegalArgumentException(format("not a hash: {0} bytes", length));
+        }
+        return verify(algorithm, password, correctHash, 1, saltLength, hashStrechIterations, 1 + saltLength,
+                length - 1 - saltLength);
+    }
+
+    private void checkLength(int hashLength)
+    {
+        if (hashLength < Math.min(hashSize, MIN_HASH_SIZE))
+        {
+            throw new IllegalArgumentException(format("truncated hash of {0} bytes", hashLength));
+        }
+    }
+
+    /**
+     * Derive a key of the length of the expected hash, and compare them
+     */
+    private static boolean verify(HashAlgorithm algorithm, String password, byte[] buffer, int saltOffset,
+            int saltLength, int iterations, int hashOffset, int hashLength)
+    {
+        byte[] derived = HashBuffers.current().derived(hashLength);
+        algorithm.derive(password, buffer, saltOffset, saltLength, iterations, derived, 0, hashLength);
         // Compare the hashes in constant time. The password is correct if
         // both hashes match.
-        return timingAttackSaveEquals(hash, testHash);
+        boolean equal = timingAttackSaveEquals(derived, buffer, hashOffset, hashLength);
+        Arrays.fill(derived, 0, hashLength, (byte) 0);
+        return equal;
     }
 
     /**
@@ -49,18 +288,19 @@ public class PasswordHasher
      * @return
      * @see <a href="https://en.wikipedia.org/wiki/Timing_attack">https://en.wikipedia.org/wiki/Timing_attack</a>
      */
-    private boolean timingAttackSaveEquals(byte[] a, byte[] b)
+    private static boolean timingAttackSaveEquals(byte[] a, byte[] b, int bOffset, int length)
     {
-        int diff = a.length ^ b.length;
-        for (int i = 0; i < a.length && i < b.length; i++)
+        int diff = 0;
+        for (int i = 0; i < length; i++)
         {
-            diff |= a[i] ^ b[i];
+            diff |= a[i] ^ b[bOffset + i];
         }
         return diff == 0;
     }
 
     /**
-     * Hash a password with generated salt
+     * Hash a password with generated salt, in the legacy hex format. Prefer {@link #toVersionedHash(String)}, as
+     * hashes in this format always {@link #needsRehash(String) need rehashing}.
      *
      * @param password
      * @return
@@ -80,7 +320,7 @@ public class PasswordHasher
     public String toHash(String password, byte[] salt)
     {
         StringBuilder b = new StringBuilder();
-        final byte[] hash = hash(password, salt);
+        final byte[] hash = hash(HashAlgorithm.PBKDF2_SHA1, legacyIterations, password, salt);
         b.append(toHex(hash));
         b.append(":");
         b.append(toHex(salt));
@@ -88,54 +328,177 @@ public class PasswordHasher
     }
 
     /**
-     * Bytes to hex string
+     * Hash a password with generated salt, in the versioned format:
      *
-     * @param bytes
+     * <pre>
+     *     $&lt;algorithm id&gt;$v=1$i=&lt;iterations&gt;$&lt;salt&gt;$&lt;hash&gt;
+     * </pre>
+     *
+     * where the salt and the hash are in Base64 without padding. This follows the PHC string format.
+     *
+     * @param password
      * @return
      */
-    private String toHex(byte[] bytes)
+    public String toVersionedHash(String password)
     {
-        return DatatypeConverter.printHexBinary(bytes);
+        return toVersionedHash(password, generateSalt());
     }
 
     /**
-     * Hex to bytes
+     * Hash a password with user provided salt, in the versioned format. See {@link #toVersionedHash(String)}.
      *
-     * @param hex
+     * @param password
+     * @param salt
      * @return
      */
-    private static byte[] fromHex(String hex)
+    public String toVersionedHash(String password, byte[] salt)
     {
-        return DatatypeConverter.parseHexBinary(hex);
+        return EncodedHash.encode(algorithm, hashStrechIterations, salt,
+                hash(algorithm, hashStrechIterations, password, salt));
     }
 
     /**
-     * Hash a password with user provided salt
+     * Hash a password with generated salt, in the compact binary format: the length of the salt as a byte, followed
+     * by the salt, followed by the hash
      *
      * @param password
-     * @param salt
      * @return
      */
-    private byte[] hash(String password, byte[] salt)
+    public byte[] toBinaryHash(String password)
     {
-        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, hashStrechIterations, hashSize * 8);
-        SecretKeyFactory skf;
-        try
-        {
-            skf = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1");
-        }
-        catch (NoSuchAlgorithmException e)
-        {
-            throw new RuntimeException(e);
-        }
-        try
-        {
-            return skf.generateSecret(spec).getEncoded();
-        }
-        catch (InvalidKeySpecException e)
+        return toBinaryHash(password, generateSalt());
+    }
+
+    /**
+     * Hash a password with user provided salt, in the compact binary format. See {@link #toBinaryHash(String)}.
+     *
+     * @param password
+     * @param salt at most 255 bytes
+     * @return
+     */
+    public byte[] toBinaryHash(String password, byte[] salt)
+    {
+        if (salt.length > 255)
         {
-            throw new RuntimeException(e);
+            throw new IllegalArgumentException(format("salt must be at most 255 bytes, but was {0}", salt.length));
         }
+        byte[] result = new byte[1 + salt.length + hashSize];
+        result[0] = (byte) salt.length;
+        System.arraycopy(salt, 0, result, 1, salt.length);
+        algorithm.derive(password, salt, 0, salt.length, hashStrechIterations, result, 1 + salt.length, hashSize);
+        return result;
+    }
+
+    /**
+     * Hash a password with generated salt, in the binary format encoded as Base64. See {@link #toBinaryHash(String)}.
+     *
+     * @param password
+     * @return
+     */
+    public String toBase64Hash(String password)
+    {
+        return Base64.getEncoder().encodeToString(toBinaryHash(password));
+    }
+
+    /**
+     * Hash a password with generated salt, in the versioned format, on the {@link HashingPool#common() common hashing
+     * pool}, rather than on the calling thread
+     *
+     * @param password
+     * @return the hash, or a failed future if the pool rejected the work
+     */
+    public CompletableFuture<String> toHashAsync(String password)
+    {
+        return toHashAsync(password, HashingPool.common());
+    }
+
+    /**
+     * Hash a password with generated salt, in the versioned format, on the given hashing pool, rather than on the
+     * calling thread
+     *
+     * @param password
+     * @param pool
+     * @return the hash, or a failed future if the pool rejected the work
+     */
+    public CompletableFuture<String> toHashAsync(String password, HashingPool pool)
+    {
+        return pool.submit(() -> toVersionedHash(password));
+    }
+
+    /**
+     * Validate a password on the {@link HashingPool#common() common hashing pool}, rather than on the calling thread
+     *
+     * @param password
+     * @param correctHash
+     * @return whether the password is correct, or a failed future if the pool rejected the work
+     */
+    public CompletableFuture<Boolean> validatePasswordAsync(String password, String correctHash)
+    {
+        return validatePasswordAsync(password, correctHash, HashingPool.common());
+    }
+
+    /**
+     * Validate a password on the given hashing pool, rather than on the calling thread
+     *
+     * @param password
+     * @param correctHash
+     * @param pool
+     * @return whether the password is correct, or a failed future if the pool rejected the work
+     */
+    public CompletableFuture<Boolean> validatePasswordAsync(String password, String correctHash, HashingPool pool)
+    {
+        return pool.submit(() -> validatePassword(password, correctHash));
+    }
+
+    /**
+     * Hash a batch of passwords with generated salts, in the versioned format, in parallel on all the threads of the
+     * given pool, e.g. when migrating credentials
+     *
+     * @param passwords
+     * @param pool
+     * @return the hashes, in order
+     */
+    public CompletableFuture<List<String>> toHashAll(List<String> passwords, HashingPool pool)
+    {
+        return pool.map(passwords, this::toVersionedHash);
+    }
+
+    /**
+     * Validate a batch of passwords against their correct hashes, in parallel on all the threads of the given pool
+     *
+     * @param credentials pairs of a password and its correct hash
+     * @param pool
+     * @return whether each password is correct, in order
+     */
+    public CompletableFuture<List<Boolean>> validatePasswordAll(List<P2<String, String>> credentials,
+            HashingPool pool)
+    {
+        return pool.map(credentials, c -> validatePassword(c._1(), c._2()));
+    }
+
+    /**
+     * Bytes to hex string
+     *
+     * @param bytes
+     * @return
+     */
+    private String toHex(byte[] bytes)
+    {
+        return DatatypeConverter.printHexBinary(bytes);
+    }
+
+    /**
+     * Hash a password with user provided salt
+     *
+     * @param password
+     * @param salt
+     * @return
+     */
+    private byte[] hash(HashAlgorithm algorithm, int iterations, String password, byte[] salt)
+    {
+        byte[] hash = new byte[hashSize];
+        algorithm.derive(password, salt, 0, salt.length, iterations, hash, 0, hashSize);
+        return hash;
     }
 
     /**
@@ -145,9 +508,8 @@ public class PasswordHasher
      */
     private byte[] generateSalt()
     {
-        SecureRandom random = new SecureRandom();
         byte[] salt = new byte[saltSize];
-        random.nextBytes(salt);
+        RANDOM.get().nextBytes(salt);
         return salt;
     }
 }
\ No newline at end of file
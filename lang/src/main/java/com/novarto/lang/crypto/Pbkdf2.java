@@ -0,0 +1,201 @@
+package com.novarto.lang.crypto;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import static java.text.MessageFormat.format;
+
+/**
+ * PBKDF2 (RFC 8018) with HMAC over a given message digest, over buffers which are reused by each thread.
+ *
+ * The output is the same as that of the JCA's PBKDF2WithHmac key factories, which encode the password as UTF-8, but
+ * without the per call garbage of a PBEKeySpec, a copy of the password as a char array, and the derived key object.
+ * HMAC is computed over a MessageDigest which digests into the given buffers, as javax.crypto.Mac allocates its
+ * result on every iteration. Thus deriving a key does not allocate at all.
+ */
+final class Pbkdf2 implements HashAlgorithm
+{
+    private final String id;
+    private final String digestAlgorithm;
+    private final int blockSize;
+    private final ThreadLocal<State> state;
+
+    /**
+     * @param digestAlgorithm the JCA name of the message digest
+     * @param blockSize       the block size of the message digest, in bytes
+     */
+    Pbkdf2(String id, String digestAlgorithm, int blockSize)
+    {
+        this.id = id;
+        this.digestAlgorithm = digestAlgorithm;
+        this.blockSize = blockSize;
+        this.state = ThreadLocal.withInitial(State::new);
+    }
+
+    @Override
+    public String id()
+    {
+        return id;
+    }
+
+    @Override
+    public void derive(CharSequence password, byte[] salt, int saltOffset, int saltLength, int iterations, byte[] out,
+            int outOffset, int length)
+    {
+        if (iterations <= 0)
+        {
+            throw new IllegalArgumentException(format("iterations must be positive, but were {0}", iterations));
+        }
+        state.get().derive(password, salt, saltOffset, saltLength, iterations, out, outOffset, length);
+    }
+
+    /**
+     * The digest and buffers of a thread
+     */
+    private final class State
+    {
+        private final MessageDigest digest;
+        private final int macLength;
+        private final byte[] u;
+        private final byte[] t;
+        private final byte[] innerPad = new byte[blockSize];
+        private final byte[] outerPad = new byte[blockSize];
+
+        private byte[] password = new byte[blockSize];
+
+        private State()
+        {
+            try
+            {
+                digest = MessageDigest.getInstance(digestAlgorithm);
+            }
+            catch (NoSuchAlgorithmException e)
+            {
+                throw new IllegalStateException(e);
+            }
+            macLength = digest.getDigestLength();
+            u = new byte[macLength];
+            t = new byte[macLength];
+        }
+
+        private void derive(CharSequence password, byte[] salt, int saltOffset, int saltLength, int iterations,
+                byte[] out, int outOffset, int length)
+        {
+            try
+            {
+                key(password);
+                for (int block = 1, offset = 0; offset < length; block++, offset += macLength)
+                {
+                    digest.update(innerPad, 0, blockSize);
+                    digest.update(salt, saltOffset, saltLength);
+                    digest.update((byte) (block >>> 24));
+                    digest.update((byte) (block >>> 16));
+                    digest.update((byte) (block >>> 8));
+                    digest.update((byte) block);
+                    finishMac();
+                    System.arraycopy(u, 0, t, 0, macLength);
+                    for (int i = 1; i < iterations; i++)
+                    {
+                        digest.update(innerPad, 0, blockSize);
+                        digest.update(u, 0, macLength);
+                        finishMac();
+                        for (int j = 0; j < macLength; j++)
+                        {
+                            t[j] ^= u[j];
+                        }
+                    }
+                    System.arraycopy(t, 0, out, outOffset + offset, Math.min(macLength, length - offset));
+                }
+            }
+            catch (DigestException e)
+            {
+                throw new IllegalStateException(e);
+            }
+            finally
+            {
+                digest.reset();
+                Arrays.fill(innerPad, (byte) 0);
+                Arrays.fill(outerPad, (byte) 0);
+                Arrays.fill(u, (byte) 0);
+                Arrays.fill(t, (byte) 0);
+            }
+        }
+
+        /**
+         * Complete the HMAC whose inner message has been fed to the digest, into u
+         */
+        private void finishMac() throws DigestException
+        {
+            digest.digest(u, 0, macLength);
+            digest.update(outerPad, 0, blockSize);
+            digest.update(u, 0, macLength);
+            digest.digest(u, 0, macLength);
+        }
+
+        /**
+         * Key the HMAC with the password, encoded as UTF-8. Unpaired surrogates are encoded as '?', as the JCA does.
+         */
+        private void key(CharSequence s) throws DigestException
+        {
+            int n = s.length();
+            if (password.length < 3 * n)
+            {
+                password = new byte[3 * n];
+            }
+            byte[] bytes = password;
+            int j = 0;
+            for (int i = 0; i < n; i++)
+            {
+                char c = s.charAt(i);
+                if (c < 0x80)
+                {
+                    bytes[j++] = (byte) c;
+                }
+                else if (c < 0x800)
+                {
+                    bytes[j++] = (byte) (0xC0 | c >> 6);
+                    bytes[j++] = (byte) (0x80 | c & 0x3F);
+                }
+                else if (Character.isSurrogate(c))
+                {
+                    if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1)))
+                    {
+                        int cp = Character.toCodePoint(c, s.charAt(++i));
+                        bytes[j++] = (byte) (0xF0 | cp >> 18);
+                        bytes[j++] = (byte) (0x80 | cp >> 12 & 0x3F);
+                        bytes[j++] = (byte) (0x80 | cp >> 6 & 0x3F);
+                        bytes[j++] = (byte) (0x80 | cp & 0x3F);
+                    }
+                    else
+                    {
+                        bytes[j++] = '?';
+                    }
+                }
+                else
+                {
+                    bytes[j++] = (byte) (0xE0 | c >> 12);
+                    bytes[j++] = (byte) (0x80 | c >> 6 & 0x3F);
+                    bytes[j++] = (byte) (0x80 | c & 0x3F);
+                }
+            }
+
+            int keyLength = j;
+            if (keyLength > blockSize)
+            {
+                //a key longer than a block is replaced by its digest
+                digest.update(bytes, 0, keyLength);
+                Arrays.fill(bytes, 0, keyLength, (byte) 0);
+                keyLength = digest.digest(bytes, 0, bytes.length);
+            }
+            for (int i = 0; i < blockSize; i++)
+            {
+                byte k = i < keyLength ? bytes[i] : 0;
+                innerPad[i] = (byte) (k ^ 0x36);
+                outerPad[i] = (byte) (k ^ 0x5c);
+            }
+            Arrays.fill(bytes, 0, keyLength, (byte) 0);
+        }
+    }
+}
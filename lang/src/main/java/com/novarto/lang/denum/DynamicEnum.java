@@ -10,12 +10,29 @@ public class DynamicEnum<A extends DynamicEnum<A>> implements Comparable<A>
     public final int id;
     public final String name;
 
+    /**
+     * The position of this instance among all the instances of its type, assigned by its DynamicEnumFactory.
+     * Used as a dense index by DynamicEnumSet and DynamicEnumMap, much like Enum.ordinal() in EnumSet and EnumMap.
+     */
+    int ordinal = -1;
+
     protected DynamicEnum(int id, String name)
     {
         this.id = id;
         this.name = name;
     }
 
+    /**
+     * The dense index of this instance among all the instances of its type, much like Enum.ordinal(). It is the
+     * position of the instance in its factory's values(), unless the factory has been reloaded; reloads append
+     * ordinals, so an instance keeps its ordinal for its lifetime. Most applications should not need this method;
+     * it is intended for array-indexed data structures such as DynamicEnumMap.
+     */
+    public final int ordinal()
+    {
+        return ordinal;
+    }
+
     @Override
     public final boolean equals(Object o)
     {
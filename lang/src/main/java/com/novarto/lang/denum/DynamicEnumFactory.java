@@ -1,15 +1,14 @@
 package com.novarto.lang.denum;
 
-import com.novarto.lang.Collections;
 import fj.F0;
 import fj.data.List;
-import fj.data.Set;
 
 import java.lang.reflect.Array;
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.concurrent.ConcurrentHashMap;
 
-import static com.novarto.lang.Collections.duplicates;
 import static java.text.MessageFormat.format;
 
 /**
@@ -25,12 +24,17 @@ import static java.text.MessageFormat.format;
 @SuppressWarnings("unchecked")
 public class DynamicEnumFactory<A extends DynamicEnum<A>>
 {
-    private final Map<Integer, A> byId;
-    private final Map<String, A> byName;
-    private final A[] values;
+    /**
+     * All the indexes are published together, so that readers never observe a partially built state.
+     */
+    private volatile Snapshot<A> snapshot;
 
     private static final ConcurrentHashMap<String, DynamicEnumFactory<?>> ALL_FACTORIES = new ConcurrentHashMap<>();
+    private final Class<A> type;
     private final String typeName;
+    private final F0<List<A>> loadF;
+    private final boolean reloadable;
+    private final Object reloadLock = new Object();
 
     @SuppressWarnings("unchecked")
     /**
@@ -38,41 +42,160 @@ public class DynamicEnumFactory<A extends DynamicEnum<A>>
      * Only one instance of a DynamicEnumFactory must be instantiated JVM-wide for a given DynamicEnum class declaration.
      */
     public DynamicEnumFactory(Class<A> type, F0<List<A>> loadF)
+    {
+        this(type, loadF, false);
+    }
+
+    /**
+     * Construct a new DynamicEnumFactory, given the class of the dynamic enum, and a function to load all the enum values.
+     * If reloadable is true, the values can later be reloaded via {@link #reload()}.
+     * Only one instance of a DynamicEnumFactory must be instantiated JVM-wide for a given DynamicEnum class declaration.
+     */
+    public DynamicEnumFactory(Class<A> type, F0<List<A>> loadF, boolean reloadable)
     {
 
-        if (ALL_FACTORIES.get(type.getCanonicalName()) != null)
+        if (ALL_FACTORIES.get(type.getName()) != null)
         {
             throw new IllegalStateException(
                     "you must instantiate only one factory per dynamic enum type." + "Duplicate factory instantiated for " +
                             type);
         }
-        List<A> allAsList = loadF.f();
 
-        List<String> namesAsList = allAsList.map(x -> x.name);
+        this.type = type;
+        typeName = type.getName();
+        this.loadF = loadF;
+        this.reloadable = reloadable;
 
-        Set<A> duplicates = duplicates(allAsList);
+        this.snapshot = build(type, loadF.f(), null);
+
+        ALL_FACTORIES.put(type.getName(), this);
+    }
+
+    /**
+     * Load the values again, and atomically replace the current ones with them. Readers are never blocked, and
+     * observe either the old or the new values, never a mix.
+     *
+     * The instances which are present both before and after the reload are retained, so that references to them
+     * (e.g. constants) remain valid and identical to what byId and byName return. Therefore an existing id
+     * must keep its name, and an existing name must keep its id. Instances which are no longer loaded are
+     * removed from values(), byId and byName, but remain valid elements of DynamicEnumSet and DynamicEnumMap.
+     *
+     * If the new values are invalid, the reload fails with an illegal state, and the current values are kept.
+     * Concurrent reloads are serialized.
+     */
+    public void reload()
+    {
+        if (!reloadable)
+        {
+            throw new IllegalStateException("the factory for " + typeName + " is not reloadable");
+        }
+
+        synchronized (reloadLock)
+        {
+            this.snapshot = build(type, loadF.f(), snapshot);
+        }
+    }
+
+    /**
+     * Validate the loaded values, and index them, in a single pass over the loaded list. If this is a reload, the
+     * instances of the previous snapshot are retained, and the new instances are given ordinals following the
+     * previous ones.
+     */
+    static <A extends DynamicEnum<A>> Snapshot<A> build(Class<A> type, List<A> xs, Snapshot<A> previous)
+    {
+        A[] values = (A[]) Array.newInstance(type, xs.length());
+        int n = 0;
+        for (List<A> rest = xs; rest.isNotEmpty(); rest = rest.tail())
+        {
+            values[n++] = rest.head();
+        }
+        Arrays.sort(values, (x, y) -> Integer.compare(x.id, y.id));
+
+        //after sorting, equal ids are adjacent
+        java.util.List<A> duplicates = new ArrayList<>();
+        for (int i = 1; i < values.length; i++)
+        {
+            if (values[i].id == values[i - 1].id)
+            {
+                duplicates.add(values[i]);
+            }
+        }
 
         if (!duplicates.isEmpty())
         {
             throw new IllegalStateException(format("Duplicate enums of type {0} : {1}", type, duplicates));
         }
 
-        Set<String> duplicateNames = duplicates(namesAsList);
+        A[] universe = previous == null ? values : retainKnown(type, values, previous);
+
+        NameIndex<A> byName = new NameIndex<>(values);
+        java.util.List<String> duplicateNames = byName.duplicateNames();
 
         if (!duplicateNames.isEmpty())
         {
-            throw new IllegalStateException(format("Duplicate enum names of type {0} : {1}", type, duplicates));
+            throw new IllegalStateException(format("Duplicate enum names of type {0} : {1}", type, duplicateNames));
         }
 
+        //only assign ordinals once the values are known to be valid
+        if (previous == null)
+        {
+            for (int i = 0; i < values.length; i++)
+            {
+                values[i].ordinal = i;
+            }
+        }
+        else
+        {
+            for (int i = previous.universe.length; i < universe.length; i++)
+            {
+                universe[i].ordinal = i;
+            }
+        }
 
-        this.byId = Collections.toMapUnique(loadF.f(), x -> x.id, x -> x);
-        this.byName = Collections.toMapUnique(loadF.f(), x -> x.name, x -> x);
+        return new Snapshot<>(values, universe, IdIndex.of(values), byName);
+    }
 
-        this.values = byId.values().toArray((A[]) Array.newInstance(type, byId.values().size()));
+    /**
+     * Replace the values which are already known by the instances of the previous snapshot, and return the new
+     * universe, which has the values not known so far appended to it.
+     */
+    private static <A extends DynamicEnum<A>> A[] retainKnown(Class<A> type, A[] values, Snapshot<A> previous)
+    {
+        //match against every instance ever loaded, so that an instance removed by an earlier reload is revived,
+        //rather than replaced by a new one which is equal to it, but has a different ordinal
+        boolean removals = previous.universe.length != previous.values.length;
+        IdIndex<A> knownIds = removals ? IdIndex.of(previous.universe) : previous.byId;
+        NameIndex<A> knownNames = removals ? new NameIndex<>(previous.universe) : previous.byName;
 
-        ALL_FACTORIES.put(type.getName(), this);
+        java.util.List<A> added = new ArrayList<>();
+        for (int i = 0; i < values.length; i++)
+        {
+            A x = values[i];
+            A existing = knownIds.get(x.id);
+            A sameName = knownNames.get(x.name);
+            if (existing != sameName && (existing != null || sameName != null))
+            {
+                A old = existing != null ? existing : sameName;
+                throw new IllegalStateException(
+                        format("Reloaded enum {0} of type {1} conflicts with existing {2}", x.name + "/" + x.id,
+                                type, old.name + "/" + old.id));
+            }
+            if (existing != null)
+            {
+                values[i] = existing;
+            }
+            else
+            {
+                added.add(x);
+            }
+        }
 
-        typeName = type.getName();
+        A[] universe = Arrays.copyOf(previous.universe, previous.universe.length + added.size());
+        for (int i = 0; i < added.size(); i++)
+        {
+            universe[previous.universe.length + i] = added.get(i);
+        }
+        return universe;
     }
 
     /**
@@ -80,9 +203,9 @@ public class DynamicEnumFactory<A extends DynamicEnum<A>>
      */
     public A byId(int id)
     {
-        A result = byId.get(id);
+        A result = snapshot.byId.get(id);
         checkExists(id, result);
-        return byId.get(id);
+        return result;
     }
 
     /**
@@ -91,20 +214,75 @@ public class DynamicEnumFactory<A extends DynamicEnum<A>>
      */
     public A byName(String name)
     {
-        A result = byName.get(name);
+        A result = snapshot.byName.get(name);
+        checkExists(name, result);
+        return result;
+    }
+
+    /**
+     * Get the enum instance, given its name as an arbitrary char sequence. Does not allocate, unless the
+     * name is not found.
+     */
+    public A byName(CharSequence name)
+    {
+        A result = snapshot.byName.get(name);
         checkExists(name, result);
         return result;
     }
 
     /**
-     * Get all the enum instances for this enum class
+     * Get the enum instance, given its name as the len chars starting at offset of the passed array.
+     * Does not allocate, unless the name is not found. This is useful for e.g. parsers which expose their text buffer.
+     */
+    public A byName(char[] chars, int offset, int len)
+    {
+        A result = snapshot.byName.get(chars, offset, len);
+        if (result == null)
+        {
+            checkExists(new String(chars, offset, len), null);
+        }
+        return result;
+    }
+
+    /**
+     * Get the enum instance, given its UTF-8 encoded name as the len bytes starting at offset of the passed array.
+     * Does not allocate, unless the name is not found. This is useful for e.g. decoders of binary wire formats.
+     */
+    public A byName(byte[] utf8, int offset, int len)
+    {
+        A result = snapshot.byName.get(utf8, offset, len);
+        if (result == null)
+        {
+            checkExists(new String(utf8, offset, len, StandardCharsets.UTF_8), null);
+        }
+        return result;
+    }
+
+    /**
+     * Get all the enum instances for this enum class, ordered by id
      * @return
      */
     public A[] values()
     {
-        return values;
+        return snapshot.values;
     }
 
+    /**
+     * The enum class of this factory
+     */
+    Class<A> type()
+    {
+        return type;
+    }
+
+    /**
+     * All the enum instances, indexed by their ordinal. Unlike values(), this includes the instances which have been
+     * removed by a reload.
+     */
+    A[] universe()
+    {
+        return snapshot.universe;
+    }
 
     @SuppressWarnings("unchecked")
     /**
@@ -139,7 +317,15 @@ public class DynamicEnumFactory<A extends DynamicEnum<A>>
 
     }
 
-    private void checkExists(String name, A result)
+    /**
+     * Whether a factory has been registered for the given enum class
+     */
+    static boolean isRegistered(Class<?> enumType)
+    {
+        return ALL_FACTORIES.containsKey(enumType.getName());
+    }
+
+    private void checkExists(CharSequence name, A result)
     {
         if (result == null)
         {
@@ -155,4 +341,20 @@ public class DynamicEnumFactory<A extends DynamicEnum<A>>
         }
     }
 
+    static final class Snapshot<A extends DynamicEnum<A>>
+    {
+        private final A[] values;
+        private final A[] universe;
+        private final IdIndex<A> byId;
+        private final NameIndex<A> byName;
+
+        private Snapshot(A[] values, A[] universe, IdIndex<A> byId, NameIndex<A> byName)
+        {
+            this.values = values;
+            this.universe = universe;
+            this.byId = byId;
+            this.byName = byName;
+        }
+    }
+
 }
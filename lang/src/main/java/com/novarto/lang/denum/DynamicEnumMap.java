@@ -0,0 +1,255 @@
+package com.novarto.lang.denum;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * A mutable map with dynamic enum keys of a single type, the equivalent of java.util.EnumMap.
+ *
+ * The map is represented as an array of values indexed by the keys' ordinals, so get, put, remove and containsKey
+ * are a single array access, and no memory is allocated per mapping. Prefer {@link #forEach(BiConsumer)} for
+ * iteration, which allocates nothing; the entry set view allocates an entry per element, like EnumMap does.
+ *
+ * Iteration is in key ordinal order, which is id order unless the factory has been reloaded. Like EnumMap, the
+ * iterators are weakly consistent and never throw ConcurrentModificationException. This class is not thread-safe.
+ * Null keys are not permitted, null values are.
+ */
+public final class DynamicEnumMap<A extends DynamicEnum<A>, V> extends AbstractMap<A, V>
+{
+    /**
+     * Distinguishes a key mapped to null from an absent key
+     */
+    private static final Object NULL = new Object();
+
+    private final DynamicEnumFactory<A> factory;
+    private Object[] vals;
+    private int size;
+
+    /**
+     * Create an empty map for the enum type of the given factory
+     */
+    public DynamicEnumMap(DynamicEnumFactory<A> factory)
+    {
+        this.factory = factory;
+        this.vals = new Object[factory.universe().length];
+    }
+
+    /**
+     * Create a copy of the passed map
+     */
+    public DynamicEnumMap(DynamicEnumMap<A, ? extends V> m)
+    {
+        this.factory = m.factory;
+        this.vals = m.vals.clone();
+        this.size = m.size;
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        int ordinal = ordinalOf(key);
+        return ordinal >= 0 && ordinal < vals.length && vals[ordinal] != null;
+    }
+
+    @Override
+    public boolean containsValue(Object value)
+    {
+        Object masked = mask(value);
+        for (Object x : vals)
+        {
+            if (masked.equals(x))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public V get(Object key)
+    {
+        int ordinal = ordinalOf(key);
+        return ordinal >= 0 && ordinal < vals.length ? unmask(vals[ordinal]) : null;
+    }
+
+    @Override
+    public V put(A key, V value)
+    {
+        int ordinal = ordinalOf(key);
+        if (ordinal < 0)
+        {
+            throw key == null ? new NullPointerException() : new ClassCastException(
+                    key.getClass() + " is not an instance of " + factory.type() + " known to its factory");
+        }
+        if (ordinal >= vals.length)
+        {
+            vals = Arrays.copyOf(vals, factory.universe().length);
+        }
+        Object old = vals[ordinal];
+        vals[ordinal] = mask(value);
+        if (old == null)
+        {
+            size++;
+        }
+        return unmask(old);
+    }
+
+    @Override
+    public V remove(Object key)
+    {
+        int ordinal = ordinalOf(key);
+        if (ordinal < 0 || ordinal >= vals.length)
+        {
+            return null;
+        }
+        Object old = vals[ordinal];
+        vals[ordinal] = null;
+        if (old != null)
+        {
+            size--;
+        }
+        return unmask(old);
+    }
+
+    @Override
+    public void clear()
+    {
+        Arrays.fill(vals, null);
+        size = 0;
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super A, ? super V> action)
+    {
+        A[] universe = factory.universe();
+        for (int i = 0; i < vals.length; i++)
+        {
+            Object x = vals[i];
+            if (x != null)
+            {
+                action.accept(universe[i], unmask(x));
+            }
+        }
+    }
+
+    /**
+     * The set of keys of this map, as a new DynamicEnumSet
+     */
+    public DynamicEnumSet<A> keys()
+    {
+        DynamicEnumSet<A> result = DynamicEnumSet.noneOf(factory);
+        A[] universe = factory.universe();
+        for (int i = 0; i < vals.length; i++)
+        {
+            if (vals[i] != null)
+            {
+                result.add(universe[i]);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Set<Entry<A, V>> entrySet()
+    {
+        return new AbstractSet<Entry<A, V>>()
+        {
+            @Override
+            public Iterator<Entry<A, V>> iterator()
+            {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size()
+            {
+                return size;
+            }
+
+            @Override
+            public void clear()
+            {
+                DynamicEnumMap.this.clear();
+            }
+        };
+    }
+
+    private final class EntryIterator implements Iterator<Entry<A, V>>
+    {
+        private final A[] universe = factory.universe();
+        private int next = advance(0);
+        private int last = -1;
+
+        @Override
+        public boolean hasNext()
+        {
+            return next < vals.length;
+        }
+
+        @Override
+        public Entry<A, V> next()
+        {
+            if (!hasNext())
+            {
+                throw new NoSuchElementException();
+            }
+            last = next;
+            next = advance(next + 1);
+            final int ordinal = last;
+            return new SimpleEntry<A, V>(universe[ordinal], unmask(vals[ordinal]))
+            {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                public V setValue(V value)
+                {
+                    super.setValue(value);
+                    return put(getKey(), value);
+                }
+            };
+        }
+
+        @Override
+        public void remove()
+        {
+            if (last < 0)
+            {
+                throw new IllegalStateException();
+            }
+            DynamicEnumMap.this.remove(universe[last]);
+            last = -1;
+        }
+
+        private int advance(int from)
+        {
+            int i = from;
+            while (i < vals.length && vals[i] == null)
+            {
+                i++;
+            }
+            return i;
+        }
+    }
+
+    private int ordinalOf(Object o)
+    {
+        return o != null && o.getClass() == factory.type() ? ((DynamicEnum<?>) o).ordinal : -1;
+    }
+
+    private static Object mask(Object value)
+    {
+        return value == null ? NULL : value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V unmask(Object value)
+    {
+        return value == NULL ? null : (V) value;
+    }
+}
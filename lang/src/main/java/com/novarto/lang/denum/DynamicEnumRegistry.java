@@ -0,0 +1,197 @@
+package com.novarto.lang.denum;
+
+import com.novarto.lang.ConcurrentUtil;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static java.text.MessageFormat.format;
+
+/**
+ * Eagerly initializes dynamic enum classes, and thereby their factories, in parallel, so that the cost of loading
+ * their values is paid on startup, rather than by the first request which uses them.
+ *
+ * Dynamic enum classes are declared in the spirit of java.util.ServiceLoader: every resource named
+ * {@value #RESOURCE} on the classpath lists fully qualified class names, one per line. Blank lines and everything
+ * following a '#' are ignored.
+ *
+ * Since the classes are initialized concurrently, the static initializers of two declared classes must not depend
+ * on each other; otherwise class initialization may deadlock.
+ */
+public final class DynamicEnumRegistry
+{
+    /**
+     * The name of the resources which declare dynamic enum classes
+     */
+    public static final String RESOURCE = "META-INF/dynamic-enums";
+
+    private DynamicEnumRegistry()
+    {
+    }
+
+    /**
+     * Initialize all the dynamic enum classes declared in {@value #RESOURCE} resources visible to the given class
+     * loader, using a temporary pool with a thread per core.
+     *
+     * @return the time it took to initialize each class, in declaration order
+     */
+    public static Map<Class<?>, Duration> initializeAll(ClassLoader loader)
+    {
+        ExecutorService pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try
+        {
+            return initializeAll(loader, pool);
+        }
+        finally
+        {
+            ConcurrentUtil.shutdownAndAwaitTermination(pool, 10, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Initialize all the dynamic enum classes declared in {@value #RESOURCE} resources visible to the given class
+     * loader, on the given executor.
+     *
+     * @return the time it took to initialize each class, in declaration order
+     */
+    public static Map<Class<?>, Duration> initializeAll(ClassLoader loader, Executor executor)
+    {
+        return initialize(declaredClassNames(loader), loader, executor);
+    }
+
+    /**
+     * Initialize the given dynamic enum classes, on the given executor. Blocks until all of them are initialized.
+     * If any class cannot be loaded, fails to initialize, or does not register a DynamicEnumFactory while
+     * initializing, this method throws an illegal state once all the others have completed; the failures of the
+     * other classes, if any, are added as suppressed exceptions.
+     *
+     * @return the time it took to initialize each class, in the order given
+     */
+    public static Map<Class<?>, Duration> initialize(Iterable<String> classNames, ClassLoader loader, Executor executor)
+    {
+        List<String> names = new ArrayList<>();
+        List<CompletableFuture<Timing>> tasks = new ArrayList<>();
+        for (String name : classNames)
+        {
+            names.add(name);
+            tasks.add(CompletableFuture.supplyAsync(() -> initialize(name, loader), executor));
+        }
+
+        Map<Class<?>, Duration> result = new LinkedHashMap<>();
+        IllegalStateException failure = null;
+        for (int i = 0; i < tasks.size(); i++)
+        {
+            Timing timing;
+            try
+            {
+                timing = tasks.get(i).join();
+            }
+            catch (RuntimeException e)
+            {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                if (failure == null)
+                {
+                    failure = new IllegalStateException("failed to initialize dynamic enum " + names.get(i), cause);
+                }
+                else
+                {
+                    failure.addSuppressed(cause);
+                }
+                continue;
+            }
+            result.put(timing.type, timing.duration);
+        }
+
+        if (failure != null)
+        {
+            throw failure;
+        }
+
+        return result;
+    }
+
+    /**
+     * The names of the dynamic enum classes declared in {@value #RESOURCE} resources visible to the given class
+     * loader, without duplicates
+     */
+    public static Set<String> declaredClassNames(ClassLoader loader)
+    {
+        Set<String> result = new LinkedHashSet<>();
+        try
+        {
+            Enumeration<URL> resources = loader.getResources(RESOURCE);
+            while (resources.hasMoreElements())
+            {
+                URL url = resources.nextElement();
+                try (BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(url.openStream(), StandardCharsets.UTF_8)))
+                {
+                    String line;
+                    while ((line = reader.readLine()) != null)
+                    {
+                        int comment = line.indexOf('#');
+                        String name = (comment >= 0 ? line.substring(0, comment) : line).trim();
+                        if (!name.isEmpty())
+                        {
+                            result.add(name);
+                        }
+                    }
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        return result;
+    }
+
+    private static Timing initialize(String name, ClassLoader loader)
+    {
+        long start = System.nanoTime();
+        Class<?> type;
+        try
+        {
+            type = Class.forName(name, true, loader);
+        }
+        catch (ClassNotFoundException e)
+        {
+            throw new IllegalStateException(e);
+        }
+        Duration duration = Duration.ofNanos(System.nanoTime() - start);
+
+        if (!DynamicEnum.class.isAssignableFrom(type))
+        {
+            throw new IllegalStateException(format("{0} is not a dynamic enum", name));
+        }
+        if (!DynamicEnumFactory.isRegistered(type))
+        {
+            throw new IllegalStateException(format("{0} did not register a factory while initializing", name));
+        }
+
+        return new Timing(type, duration);
+    }
+
+    private static final class Timing
+    {
+        private final Class<?> type;
+        private final Duration duration;
+
+        private Timing(Class<?> type, Duration duration)
+        {
+            this.type = type;
+            this.duration = duration;
+        }
+    }
+}
@@ -0,0 +1,419 @@
+package com.novarto.lang.denum;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * A mutable set of dynamic enum instances of a single type, the equivalent of java.util.EnumSet.
+ *
+ * The set is represented as a bit vector over the instances' ordinals, so membership tests, insertion and removal
+ * are a single bit operation, and union, intersection and difference with another DynamicEnumSet of the same type
+ * process 64 elements at a time. No memory is allocated per element.
+ *
+ * Iteration is in ordinal order, which is id order unless the factory has been reloaded. Like EnumSet, the iterator
+ * is weakly consistent and never throws ConcurrentModificationException. This class is not thread-safe.
+ * Null elements are not permitted.
+ */
+public final class DynamicEnumSet<A extends DynamicEnum<A>> extends AbstractSet<A>
+{
+    private final DynamicEnumFactory<A> factory;
+    private long[] bits;
+
+    private DynamicEnumSet(DynamicEnumFactory<A> factory, long[] bits)
+    {
+        this.factory = factory;
+        this.bits = bits;
+    }
+
+    /**
+     * Create an empty set for the enum type of the given factory
+     */
+    public static <A extends DynamicEnum<A>> DynamicEnumSet<A> noneOf(DynamicEnumFactory<A> factory)
+    {
+        return new DynamicEnumSet<>(factory, new long[wordCount(factory.universe().length)]);
+    }
+
+    /**
+     * Create a set containing all the instances of the enum type of the given factory
+     */
+    public static <A extends DynamicEnum<A>> DynamicEnumSet<A> allOf(DynamicEnumFactory<A> factory)
+    {
+        DynamicEnumSet<A> result = noneOf(factory);
+        for (A x : factory.values())
+        {
+            result.bits[x.ordinal >>> 6] |= 1L << x.ordinal;
+        }
+        return result;
+    }
+
+    /**
+     * Create a set containing the given instances
+     */
+    @SafeVarargs
+    public static <A extends DynamicEnum<A>> DynamicEnumSet<A> of(DynamicEnumFactory<A> factory, A... xs)
+    {
+        DynamicEnumSet<A> result = noneOf(factory);
+        for (A x : xs)
+        {
+            result.add(x);
+        }
+        return result;
+    }
+
+    /**
+     * Create a set containing all the elements of the given iterable
+     */
+    public static <A extends DynamicEnum<A>> DynamicEnumSet<A> copyOf(DynamicEnumFactory<A> factory, Iterable<A> xs)
+    {
+        DynamicEnumSet<A> result = noneOf(factory);
+        for (A x : xs)
+        {
+            result.add(x);
+        }
+        return result;
+    }
+
+    /**
+     * Create a copy of this set
+     */
+    public DynamicEnumSet<A> copy()
+    {
+        return new DynamicEnumSet<>(factory, bits.clone());
+    }
+
+    /**
+     * Create a new set, containing the current values of the enum type which are not in this set
+     */
+    public DynamicEnumSet<A> complement()
+    {
+        DynamicEnumSet<A> result = allOf(factory);
+        result.removeAll(this);
+        return result;
+    }
+
+    /**
+     * Create a new set, containing the elements which are in this set, in the other set, or in both
+     */
+    public DynamicEnumSet<A> union(DynamicEnumSet<A> other)
+    {
+        DynamicEnumSet<A> result = copy();
+        result.addAll(other);
+        return result;
+    }
+
+    /**
+     * Create a new set, containing the elements which are both in this set and in the other set
+     */
+    public DynamicEnumSet<A> intersection(DynamicEnumSet<A> other)
+    {
+        DynamicEnumSet<A> result = copy();
+        result.retainAll(other);
+        return result;
+    }
+
+    /**
+     * Create a new set, containing the elements which are in this set, but not in the other set
+     */
+    public DynamicEnumSet<A> difference(DynamicEnumSet<A> other)
+    {
+        DynamicEnumSet<A> result = copy();
+        result.removeAll(other);
+        return result;
+    }
+
+    @Override
+    public boolean contains(Object o)
+    {
+        int ordinal = ordinalOf(o);
+        if (ordinal < 0)
+        {
+            return false;
+        }
+        int word = ordinal >>> 6;
+        return word < bits.length && (bits[word] & (1L << ordinal)) != 0;
+    }
+
+    @Override
+    public boolean add(A a)
+    {
+        int ordinal = checkedOrdinal(a);
+        int word = ordinal >>> 6;
+        if (word >= bits.length)
+        {
+            bits = Arrays.copyOf(bits, wordCount(factory.universe().length));
+        }
+        long old = bits[word];
+        bits[word] = old | (1L << ordinal);
+        return bits[word] != old;
+    }
+
+    @Override
+    public boolean remove(Object o)
+    {
+        int ordinal = ordinalOf(o);
+        int word = ordinal >>> 6;
+        if (ordinal < 0 || word >= bits.length)
+        {
+            return false;
+        }
+        long old = bits[word];
+        bits[word] = old & ~(1L << ordinal);
+        return bits[word] != old;
+    }
+
+    @Override
+    public int size()
+    {
+        int result = 0;
+        for (long word : bits)
+        {
+            result += Long.bitCount(word);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        for (long word : bits)
+        {
+            if (word != 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void clear()
+    {
+        Arrays.fill(bits, 0L);
+    }
+
+    @Override
+    public boolean containsAll(Collection<?> c)
+    {
+        DynamicEnumSet<A> other = sameType(c);
+        if (other == null)
+        {
+            return super.containsAll(c);
+        }
+        long[] theirs = other.bits;
+        for (int i = 0; i < theirs.length; i++)
+        {
+            long ours = i < bits.length ? bits[i] : 0L;
+            if ((theirs[i] & ~ours) != 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends A> c)
+    {
+        DynamicEnumSet<A> other = sameType(c);
+        if (other == null)
+        {
+            return super.addAll(c);
+        }
+        long[] theirs = other.bits;
+        if (theirs.length > bits.length)
+        {
+            bits = Arrays.copyOf(bits, theirs.length);
+        }
+        boolean changed = false;
+        for (int i = 0; i < theirs.length; i++)
+        {
+            long old = bits[i];
+            bits[i] = old | theirs[i];
+            changed |= bits[i] != old;
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c)
+    {
+        DynamicEnumSet<A> other = sameType(c);
+        if (other == null)
+        {
+            return super.retainAll(c);
+        }
+        long[] theirs = other.bits;
+        boolean changed = false;
+        for (int i = 0; i < bits.length; i++)
+        {
+            long old = bits[i];
+            bits[i] = old & (i < theirs.length ? theirs[i] : 0L);
+            changed |= bits[i] != old;
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c)
+    {
+        DynamicEnumSet<A> other = sameType(c);
+        if (other == null)
+        {
+            return super.removeAll(c);
+        }
+        long[] theirs = other.bits;
+        boolean changed = false;
+        for (int i = 0; i < bits.length && i < theirs.length; i++)
+        {
+            long old = bits[i];
+            bits[i] = old & ~theirs[i];
+            changed |= bits[i] != old;
+        }
+        return changed;
+    }
+
+    @Override
+    public void forEach(Consumer<? super A> action)
+    {
+        A[] universe = factory.universe();
+        for (int i = 0; i < bits.length; i++)
+        {
+            long word = bits[i];
+            while (word != 0)
+            {
+                action.accept(universe[(i << 6) + Long.numberOfTrailingZeros(word)]);
+                word &= word - 1;
+            }
+        }
+    }
+
+    @Override
+    public Iterator<A> iterator()
+    {
+        return new Iterator<A>()
+        {
+            private final A[] universe = factory.universe();
+            private int next = nextSetBit(0);
+            private int last = -1;
+
+            @Override
+            public boolean hasNext()
+            {
+                return next >= 0;
+            }
+
+            @Override
+            public A next()
+            {
+                if (next < 0)
+                {
+                    throw new NoSuchElementException();
+                }
+                last = next;
+                next = nextSetBit(next + 1);
+                return universe[last];
+            }
+
+            @Override
+            public void remove()
+            {
+                if (last < 0)
+                {
+                    throw new IllegalStateException();
+                }
+                bits[last >>> 6] &= ~(1L << last);
+                last = -1;
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        DynamicEnumSet<A> other = o instanceof Collection ? sameType((Collection<?>) o) : null;
+        if (other == null)
+        {
+            return super.equals(o);
+        }
+        long[] longer = bits.length >= other.bits.length ? bits : other.bits;
+        long[] shorter = longer == bits ? other.bits : bits;
+        for (int i = 0; i < longer.length; i++)
+        {
+            if (longer[i] != (i < shorter.length ? shorter[i] : 0L))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        //consistent with Set.hashCode(), since the hash code of a dynamic enum is its id
+        int result = 0;
+        A[] universe = factory.universe();
+        for (int i = 0; i < bits.length; i++)
+        {
+            long word = bits[i];
+            while (word != 0)
+            {
+                result += universe[(i << 6) + Long.numberOfTrailingZeros(word)].id;
+                word &= word - 1;
+            }
+        }
+        return result;
+    }
+
+    private int nextSetBit(int from)
+    {
+        int i = from >>> 6;
+        if (i >= bits.length)
+        {
+            return -1;
+        }
+        long word = bits[i] & (-1L << from);
+        while (true)
+        {
+            if (word != 0)
+            {
+                return (i << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++i == bits.length)
+            {
+                return -1;
+            }
+            word = bits[i];
+        }
+    }
+
+    /**
+     * The ordinal of the passed object if it is an instance of this set's type, otherwise -1
+     */
+    private int ordinalOf(Object o)
+    {
+        return o != null && o.getClass() == factory.type() ? ((DynamicEnum<?>) o).ordinal : -1;
+    }
+
+    private int checkedOrdinal(A a)
+    {
+        int ordinal = ordinalOf(a);
+        if (ordinal < 0)
+        {
+            throw a == null ? new NullPointerException() : new ClassCastException(
+                    a.getClass() + " is not an instance of " + factory.type() + " known to its factory");
+        }
+        return ordinal;
+    }
+
+    @SuppressWarnings("unchecked")
+    private DynamicEnumSet<A> sameType(Collection<?> c)
+    {
+        return c instanceof DynamicEnumSet && ((DynamicEnumSet<?>) c).factory == factory ? (DynamicEnumSet<A>) c : null;
+    }
+
+    private static int wordCount(int size)
+    {
+        return (size + 63) >>> 6;
+    }
+}
@@ -0,0 +1,130 @@
+package com.novarto.lang.denum;
+
+/**
+ * An index of dynamic enum instances by their int id, which does not box and allocates nothing on lookup.
+ *
+ * If the ids are dense (or mostly dense), the index is an array indexed by id - minId, and a lookup is a single
+ * bounds check and array load. Otherwise it is an open-addressing hash table over int keys, with linear probing.
+ */
+abstract class IdIndex<A extends DynamicEnum<A>>
+{
+    /**
+     * If the id range spans at most this many slots per value, the dense representation is chosen.
+     * A dense slot is a single reference, while the hash table needs a key and a reference for twice as many slots,
+     * so up to this factor the dense array is also no larger.
+     */
+    private static final int MAX_SLOTS_PER_VALUE = 4;
+
+    /**
+     * Small enums always get the dense representation, regardless of how sparse their ids are.
+     */
+    private static final int MIN_DENSE_SLOTS = 64;
+
+    /**
+     * Get the instance with the given id, or null if there is none
+     */
+    abstract A get(int id);
+
+    /**
+     * Build an index over the given values. The ids of the values must be distinct.
+     */
+    static <A extends DynamicEnum<A>> IdIndex<A> of(A[] values)
+    {
+        if (values.length == 0)
+        {
+            return new Dense<>(0, values);
+        }
+
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (A x : values)
+        {
+            min = Math.min(min, x.id);
+            max = Math.max(max, x.id);
+        }
+
+        long slots = (long) max - min + 1;
+        if (slots <= Math.max(MIN_DENSE_SLOTS, (long) MAX_SLOTS_PER_VALUE * values.length))
+        {
+            @SuppressWarnings("unchecked") A[] table = (A[]) new DynamicEnum<?>[(int) slots];
+            for (A x : values)
+            {
+                table[x.id - min] = x;
+            }
+            return new Dense<>(min, table);
+        }
+
+        return new Sparse<>(values);
+    }
+
+    static final class Dense<A extends DynamicEnum<A>> extends IdIndex<A>
+    {
+        private final int minId;
+        private final A[] table;
+
+        private Dense(int minId, A[] table)
+        {
+            this.minId = minId;
+            this.table = table;
+        }
+
+        @Override
+        A get(int id)
+        {
+            //unsigned comparison folds the lower and upper bounds check in one
+            int i = id - minId;
+            return Integer.compareUnsigned(i, table.length) < 0 ? table[i] : null;
+        }
+    }
+
+    static final class Sparse<A extends DynamicEnum<A>> extends IdIndex<A>
+    {
+        private final int[] keys;
+        private final A[] vals;
+        private final int mask;
+
+        private Sparse(A[] values)
+        {
+            //a load factor of at most 0.5 keeps the probe sequences short
+            int capacity = Integer.highestOneBit(Math.max(2, values.length) * 2 - 1) << 1;
+            this.keys = new int[capacity];
+            @SuppressWarnings("unchecked") A[] vals = (A[]) new DynamicEnum<?>[capacity];
+            this.vals = vals;
+            this.mask = capacity - 1;
+
+            for (A x : values)
+            {
+                int i = slot(x.id);
+                while (vals[i] != null)
+                {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = x.id;
+                vals[i] = x;
+            }
+        }
+
+        @Override
+        A get(int id)
+        {
+            int i = slot(id);
+            A x;
+            //the values are never null, so an empty slot terminates the probe sequence
+            while ((x = vals[i]) != null)
+            {
+                if (keys[i] == id)
+                {
+                    return x;
+                }
+                i = (i + 1) & mask;
+            }
+            return null;
+        }
+
+        private int slot(int id)
+        {
+            int h = id * 0x9E3779B9;
+            return (h ^ (h >>> 16)) & mask;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.novarto.lang.denum;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An index of dynamic enum instances by their name, which can be queried with a String, an arbitrary CharSequence,
+ * a slice of a char array or a slice of a UTF-8 encoded byte array, without allocating on lookup.
+ *
+ * It is an open-addressing hash table with linear probing. All keys are hashed with the String.hashCode() function,
+ * over UTF-16 code units, so String keys use their cached hash code, and the other key types compute the same hash
+ * in a single pass over their input. The stored hash codes are compared before the names themselves.
+ */
+final class NameIndex<A extends DynamicEnum<A>>
+{
+    private final int[] hashes;
+    private final A[] vals;
+    private final byte[][] utf8;
+    private final int mask;
+    private final List<String> duplicateNames = new ArrayList<>(0);
+
+    /**
+     * Build an index over the given values. If the names of the values are not distinct, only the first value with
+     * a given name is indexed, and the name is reported by {@link #duplicateNames()}.
+     */
+    NameIndex(A[] values)
+    {
+        //a load factor of at most 0.5 keeps the probe sequences short
+        int capacity = Integer.highestOneBit(Math.max(2, values.length) * 2 - 1) << 1;
+        this.hashes = new int[capacity];
+        @SuppressWarnings("unchecked") A[] vals = (A[]) new DynamicEnum<?>[capacity];
+        this.vals = vals;
+        this.utf8 = new byte[capacity][];
+        this.mask = capacity - 1;
+
+        for (A x : values)
+        {
+            int h = x.name.hashCode();
+            int i = slot(h);
+            A y;
+            while ((y = vals[i]) != null && !(hashes[i] == h && y.name.equals(x.name)))
+            {
+                i = (i + 1) & mask;
+            }
+            if (y != null)
+            {
+                duplicateNames.add(x.name);
+                continue;
+            }
+            hashes[i] = h;
+            vals[i] = x;
+            utf8[i] = x.name.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * The names which occur more than once among the indexed values, or an empty list if they are distinct
+     */
+    List<String> duplicateNames()
+    {
+        return duplicateNames;
+    }
+
+    /**
+     * Get the instance with the given name, or null if there is none
+     */
+    A get(String name)
+    {
+        int h = name.hashCode();
+        int i = slot(h);
+        A x;
+        //the values are never null, so an empty slot terminates the probe sequence
+        while ((x = vals[i]) != null)
+        {
+            if (hashes[i] == h && x.name.equals(name))
+            {
+                return x;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Get the instance with the given name, or null if there is none
+     */
+    A get(CharSequence name)
+    {
+        if (name instanceof String)
+        {
+            return get((String) name);
+        }
+
+        int h = 0;
+        for (int j = 0; j < name.length(); j++)
+        {
+            h = 31 * h + name.charAt(j);
+        }
+
+        int i = slot(h);
+        A x;
+        while ((x = vals[i]) != null)
+        {
+            if (hashes[i] == h && x.name.contentEquals(name))
+            {
+                return x;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Get the instance whose name consists of the len chars of the array starting at offset, or null if there is none
+     */
+    A get(char[] chars, int offset, int len)
+    {
+        int h = 0;
+        for (int j = offset; j < offset + len; j++)
+        {
+            h = 31 * h + chars[j];
+        }
+
+        int i = slot(h);
+        A x;
+        while ((x = vals[i]) != null)
+        {
+            if (hashes[i] == h && equals(x.name, chars, offset, len))
+            {
+                return x;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Get the instance whose UTF-8 encoded name consists of the len bytes of the array starting at offset,
+     * or null if there is none
+     */
+    A get(byte[] bytes, int offset, int len)
+    {
+        int h = utf8Hash(bytes, offset, len);
+
+        int i = slot(h);
+        A x;
+        while ((x = vals[i]) != null)
+        {
+            if (hashes[i] == h && equals(utf8[i], bytes, offset, len))
+            {
+                return x;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    private int slot(int h)
+    {
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static boolean equals(String name, char[] chars, int offset, int len)
+    {
+        if (name.length() != len)
+        {
+            return false;
+        }
+        for (int j = 0; j < len; j++)
+        {
+            if (name.charAt(j) != chars[offset + j])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean equals(byte[] name, byte[] bytes, int offset, int len)
+    {
+        if (name.length != len)
+        {
+            return false;
+        }
+        for (int j = 0; j < len; j++)
+        {
+            if (name[j] != bytes[offset + j])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Computes String.hashCode() of the UTF-16 string which the passed UTF-8 bytes decode to.
+     * Malformed input yields an arbitrary hash; this is harmless, since the bytes are compared to the encoded names
+     * anyway, and malformed input is never equal to a correctly encoded name.
+     */
+    private static int utf8Hash(byte[] bytes, int offset, int len)
+    {
+        int h = 0;
+        int i = offset;
+        int end = offset + len;
+        while (i < end)
+        {
+            int b = bytes[i];
+            if (b >= 0)
+            {
+                h = 31 * h + b;
+                i++;
+            }
+            else if ((b & 0xE0) == 0xC0 && i + 1 < end)
+            {
+                h = 31 * h + (((b & 0x1F) << 6) | (bytes[i + 1] & 0x3F));
+                i += 2;
+            }
+            else if ((b & 0xF0) == 0xE0 && i + 2 < end)
+            {
+                h = 31 * h + (((b & 0x0F) << 12) | ((bytes[i + 1] & 0x3F) << 6) | (bytes[i + 2] & 0x3F));
+                i += 3;
+            }
+            else if ((b & 0xF8) == 0xF0 && i + 3 < end)
+            {
+                int codePoint = ((b & 0x07) << 18) | ((bytes[i + 1] & 0x3F) << 12) | ((bytes[i + 2] & 0x3F) << 6) |
+                        (bytes[i + 3] & 0x3F);
+                h = 31 * h + Character.highSurrogate(codePoint);
+                h = 31 * h + Character.lowSurrogate(codePoint);
+                i += 4;
+            }
+            else
+            {
+                h = 31 * h + b;
+                i++;
+            }
+        }
+        return h;
+    }
+}
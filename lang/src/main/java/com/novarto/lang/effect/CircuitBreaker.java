@@ -0,0 +1,132 @@
+package com.novarto.lang.effect;
+
+import fj.F0;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import static java.text.MessageFormat.format;
+
+/**
+ * A circuit breaker for lazy effects. See {@link LazyEffect#withCircuitBreaker(CircuitBreaker, F0)}.
+ *
+ * The breaker is closed initially, and lets every evaluation through. Once failureThreshold evaluations in a row
+ * have failed, it opens, and rejects every evaluation for openDuration, without evaluating the effect. After that it
+ * is half open: it lets a single trial evaluation through, and closes if that succeeds, or opens again if it fails.
+ * If the trial does not complete within openDuration, e.g. because its evaluation was abandoned, another trial is let
+ * through.
+ *
+ * A breaker is meant to be shared by all the effects which call the same service. It is thread-safe.
+ */
+public final class CircuitBreaker
+{
+    /**
+     * The states of a circuit breaker
+     */
+    public enum State
+    {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier clock;
+
+    private final LongAdder rejections = new LongAdder();
+
+    //guarded by this
+    private State state = State.CLOSED;
+    private int failures;
+    private long since;
+
+    /**
+     * @param failureThreshold the number of consecutive failures after which the breaker opens
+     * @param openDuration     how long the breaker stays open before letting a trial through
+     */
+    public CircuitBreaker(int failureThreshold, Duration openDuration)
+    {
+        this(failureThreshold, openDuration, System::nanoTime);
+    }
+
+    CircuitBreaker(int failureThreshold, Duration openDuration, LongSupplier clock)
+    {
+        if (failureThreshold < 1)
+        {
+            throw new IllegalArgumentException(format("failureThreshold must be positive, but was {0}",
+                    failureThreshold));
+        }
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.clock = clock;
+    }
+
+    /**
+     * The current state of the breaker
+     */
+    public synchronized State state()
+    {
+        return state;
+    }
+
+    /**
+     * The number of evaluations rejected because the breaker was open
+     */
+    public long rejections()
+    {
+        return rejections.sum();
+    }
+
+    <E, A> LazyEffect<E, A> apply(LazyEffect<E, A> effect, F0<E> onOpen)
+    {
+        return LazyEffect.defer(() -> {
+            if (!tryAcquire())
+            {
+                rejections.increment();
+                return LazyEffect.error(onOpen.f());
+            }
+            return effect.map(a -> {
+                onSuccess();
+                return a;
+            }).mapError(e -> {
+                onFailure();
+                return e;
+            });
+        });
+    }
+
+    synchronized boolean tryAcquire()
+    {
+        switch (state)
+        {
+        case CLOSED:
+            return true;
+        default:
+            //open: wait for openDuration; half open: a trial is in progress, unless it was abandoned
+            long now = clock.getAsLong();
+            if (now - since < openNanos)
+            {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            since = now;
+            return true;
+        }
+    }
+
+    synchronized void onSuccess()
+    {
+        state = State.CLOSED;
+        failures = 0;
+    }
+
+    synchronized void onFailure()
+    {
+        if (state == State.HALF_OPEN || ++failures >= failureThreshold)
+        {
+            state = State.OPEN;
+            since = clock.getAsLong();
+            failures = 0;
+        }
+    }
+}
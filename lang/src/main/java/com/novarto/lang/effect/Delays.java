@@ -0,0 +1,57 @@
+package com.novarto.lang.effect;
+
+import fj.Unit;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A shared timer for the delays of lazy effects, e.g. between retries and for timeouts.
+ *
+ * The timer thread only ever completes futures; an effect waiting for one is resumed on its own executor, or on the
+ * thread which runs it synchronously. Thus a single daemon thread suffices.
+ */
+final class Delays
+{
+    private static final ScheduledThreadPoolExecutor TIMER;
+
+    static
+    {
+        TIMER = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "lazy-effect-timer");
+            t.setDaemon(true);
+            return t;
+        });
+        TIMER.setRemoveOnCancelPolicy(true);
+    }
+
+    private Delays()
+    {
+    }
+
+    /**
+     * A future which completes after the given delay
+     */
+    static CompletableFuture<Unit> after(long nanos)
+    {
+        CompletableFuture<Unit> result = new CompletableFuture<>();
+        if (nanos <= 0)
+        {
+            result.complete(Unit.unit());
+            return result;
+        }
+        ScheduledFuture<?> timer = schedule(() -> result.complete(Unit.unit()), nanos);
+        result.whenComplete((x, t) -> timer.cancel(false));
+        return result;
+    }
+
+    /**
+     * Run the given task on the timer thread after the given delay. The task must be short and non-blocking.
+     */
+    static ScheduledFuture<?> schedule(Runnable task, long nanos)
+    {
+        return TIMER.schedule(task, nanos, TimeUnit.NANOSECONDS);
+    }
+}
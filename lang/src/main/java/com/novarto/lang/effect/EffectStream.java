@@ -0,0 +1,300 @@
+package com.novarto.lang.effect;
+
+import fj.F;
+import fj.F2;
+import fj.P2;
+import fj.data.Option;
+
+import java.util.*;
+
+import static com.novarto.lang.effect.LazyEffect.defer;
+import static com.novarto.lang.effect.LazyEffect.pure;
+import static java.text.MessageFormat.format;
+
+/**
+ *
+ * EffectStream is a pure description of a sequence of values of type A, produced incrementally by side-effecting
+ * computations which can fail with an error of type E. It is the streaming counterpart of {@link LazyEffect}: where
+ * a lazy effect produces exactly one value, a stream produces any number of them, in chunks.
+ *
+ * A stream is pulled: nothing is computed until it is run via runFold() or runCollect(), which return lazy effects,
+ * and then each chunk is only computed once the previous one has been consumed. Thus, apart from runCollect(), running
+ * a stream keeps at most a chunk per stage in memory, no matter how long it is, e.g. when paging through a database
+ * table or a file.
+ *
+ * The stream stops at the first error, which becomes the error of the lazy effect running it; no further chunks are
+ * pulled.
+ *
+ * Like a lazy effect, a stream can be run any number of times, and each run performs its side effects anew.
+ * Running a stream is stack-safe, regardless of its length or of how many times it was transformed.
+ *
+ * @param <E> the error type
+ * @param <A> the element type
+ */
+public final class EffectStream<E, A>
+{
+    /**
+     * Pulling a stream yields either nothing more, or a chunk and the rest of the stream
+     */
+    private final LazyEffect<E, Step<E, A>> pull;
+
+    private EffectStream(LazyEffect<E, Step<E, A>> pull)
+    {
+        this.pull = pull;
+    }
+
+    /**
+     * The empty stream
+     */
+    public static <E, A> EffectStream<E, A> empty()
+    {
+        return new EffectStream<>(pure(Step.done()));
+    }
+
+    /**
+     * A stream of the given values
+     */
+    @SafeVarargs @SuppressWarnings("varargs")
+    public static <E, A> EffectStream<E, A> of(A... xs)
+    {
+        return emit(Collections.unmodifiableList(Arrays.asList(xs.clone())), empty());
+    }
+
+    /**
+     * A stream of the single value produced by the given lazy effect
+     */
+    public static <E, A> EffectStream<E, A> eval(LazyEffect<E, A> effect)
+    {
+        return new EffectStream<>(effect.map(a -> new Step<>(Collections.singletonList(a), empty())));
+    }
+
+    /**
+     * A stream of the elements of the given iterable, pulled in chunks of the given size. Every run of the stream
+     * iterates anew.
+     */
+    public static <E, A> EffectStream<E, A> fromIterable(Iterable<A> xs, int chunkSize)
+    {
+        checkChunkSize(chunkSize);
+        return new EffectStream<>(defer(() -> EffectStream.<E, A>fromIterator(xs.iterator(), chunkSize).pull));
+    }
+
+    /**
+     * A stream of chunks, produced by repeatedly applying f to a state, starting from the given initial state.
+     * Each application yields the next chunk along with the next state, or nothing if the stream has ended.
+     * This is the natural way to page through a data source:
+     *
+     * <pre>
+     *     unfoldChunks(0, offset -&gt; readPage(offset, 100).map(rows -&gt;
+     *         rows.isEmpty() ? Option.none() : Option.some(P.p(rows, offset + rows.size()))))
+     * </pre>
+     */
+    public static <E, S, A> EffectStream<E, A> unfoldChunks(S initial, F<S, LazyEffect<E, Option<P2<List<A>, S>>>> f)
+    {
+        return new EffectStream<>(defer(() -> f.f(initial)).map(next -> next.isNone() ? Step.<E, A>done() :
+                new Step<>(next.some()._1(), unfoldChunks(next.some()._2(), f))));
+    }
+
+    /**
+     * A stream with the elements of this stream, followed by the elements of the other one
+     */
+    public EffectStream<E, A> append(EffectStream<E, A> other)
+    {
+        return new EffectStream<>(pull.bind(step -> step.isDone() ? other.pull :
+                pure(new Step<>(step.chunk, step.next.append(other)))));
+    }
+
+    /**
+     * Transform every element with the given function
+     */
+    public <B> EffectStream<E, B> map(F<A, B> f)
+    {
+        return new EffectStream<>(pull.map(step -> {
+            if (step.isDone())
+            {
+                return Step.done();
+            }
+            List<B> chunk = new ArrayList<>(step.chunk.size());
+            for (A a : step.chunk)
+            {
+                chunk.add(f.f(a));
+            }
+            return new Step<>(Collections.unmodifiableList(chunk), step.next.map(f));
+        }));
+    }
+
+    /**
+     * Transform every element with the given effectful function, evaluating the effects one after the other
+     */
+    public <B> EffectStream<E, B> mapEval(F<A, LazyEffect<E, B>> f)
+    {
+        return bind(a -> eval(f.f(a)));
+    }
+
+    /**
+     * Replace every element with the stream obtained by applying the given function to it, and concatenate the
+     * resulting streams. Each of them is run to its end before the next one is started.
+     */
+    public <B> EffectStream<E, B> bind(F<A, EffectStream<E, B>> f)
+    {
+        return new EffectStream<>(pull.bind(step -> step.isDone() ? pure(Step.done()) :
+                concat(step.chunk, 0, f, step.next).pull));
+    }
+
+    /**
+     * Keep only the elements which satisfy the given predicate
+     */
+    public EffectStream<E, A> filter(F<A, Boolean> p)
+    {
+        return new EffectStream<>(pull.map(step -> {
+            if (step.isDone())
+            {
+                return Step.done();
+            }
+            List<A> chunk = new ArrayList<>();
+            for (A a : step.chunk)
+            {
+                if (p.f(a))
+                {
+                    chunk.add(a);
+                }
+            }
+            return new Step<>(Collections.unmodifiableList(chunk), step.next.filter(p));
+        }));
+    }
+
+    /**
+     * Group the elements into lists of the given size, regardless of how they are chunked. The last list holds the
+     * remaining elements, and may be shorter. At most one list is buffered at a time.
+     */
+    public EffectStream<E, List<A>> chunk(int size)
+    {
+        checkChunkSize(size);
+        return regroup(this, Collections.emptyList(), size);
+    }
+
+    /**
+     * Create a lazy effect which runs this stream to its end, and combines its elements, in order, with the given
+     * function, starting from the given initial value. It fails with the first error of the stream.
+     */
+    public <B> LazyEffect<E, B> runFold(B initial, F2<B, A, B> f)
+    {
+        return pull.bind(step -> {
+            if (step.isDone())
+            {
+                return pure(initial);
+            }
+            B acc = initial;
+            for (A a : step.chunk)
+            {
+                acc = f.f(acc, a);
+            }
+            return step.next.runFold(acc, f);
+        });
+    }
+
+    /**
+     * Create a lazy effect which runs this stream to its end, and collects all of its elements into a list. This
+     * holds the entire stream in memory; prefer {@link #runFold(Object, F2)} for long streams.
+     */
+    public LazyEffect<E, List<A>> runCollect()
+    {
+        return defer(() -> runFold(new ArrayList<A>(), (xs, x) -> {
+            xs.add(x);
+            return xs;
+        })).map(Collections::unmodifiableList);
+    }
+
+    private static <E, A> EffectStream<E, A> emit(List<A> chunk, EffectStream<E, A> next)
+    {
+        return new EffectStream<>(pure(new Step<>(chunk, next)));
+    }
+
+    private static <E, A> EffectStream<E, A> fromIterator(Iterator<A> it, int chunkSize)
+    {
+        return new EffectStream<>(LazyEffect.<E, Step<E, A>>pure(() -> {
+            if (!it.hasNext())
+            {
+                return Step.done();
+            }
+            List<A> chunk = new ArrayList<>(chunkSize);
+            while (chunk.size() < chunkSize && it.hasNext())
+            {
+                chunk.add(it.next());
+            }
+            return new Step<>(Collections.unmodifiableList(chunk), fromIterator(it, chunkSize));
+        }));
+    }
+
+    /**
+     * The concatenation of f applied to the elements of chunk from index i on, followed by rest bound to f
+     */
+    private static <E, A, B> EffectStream<E, B> concat(List<A> chunk, int i, F<A, EffectStream<E, B>> f,
+            EffectStream<E, A> rest)
+    {
+        if (i == chunk.size())
+        {
+            return rest.bind(f);
+        }
+        return new EffectStream<>(defer(() -> f.f(chunk.get(i)).append(concat(chunk, i + 1, f, rest)).pull));
+    }
+
+    private static <E, A> EffectStream<E, List<A>> regroup(EffectStream<E, A> source, List<A> pending, int size)
+    {
+        return new EffectStream<>(source.pull.map(step -> {
+            if (step.isDone())
+            {
+                return pending.isEmpty() ? Step.done() :
+                        new Step<>(Collections.singletonList(pending), EffectStream.<E, List<A>>empty());
+            }
+            List<List<A>> groups = new ArrayList<>();
+            List<A> current = new ArrayList<>(pending);
+            for (A a : step.chunk)
+            {
+                current.add(a);
+                if (current.size() == size)
+                {
+                    groups.add(Collections.unmodifiableList(current));
+                    current = new ArrayList<>(size);
+                }
+            }
+            return new Step<>(Collections.unmodifiableList(groups),
+                    regroup(step.next, Collections.unmodifiableList(current), size));
+        }));
+    }
+
+    private static void checkChunkSize(int size)
+    {
+        if (size <= 0)
+        {
+            throw new IllegalArgumentException(format("chunk size must be positive, but was {0}", size));
+        }
+    }
+
+    /**
+     * The result of pulling a stream: a chunk and the rest of the stream, or, if chunk is null, the end of the stream
+     */
+    private static final class Step<E, A>
+    {
+        private static final Step<?, ?> DONE = new Step<>(null, null);
+
+        private final List<A> chunk;
+        private final EffectStream<E, A> next;
+
+        private Step(List<A> chunk, EffectStream<E, A> next)
+        {
+            this.chunk = chunk;
+            this.next = next;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <E, A> Step<E, A> done()
+        {
+            return (Step<E, A>) DONE;
+        }
+
+        private boolean isDone()
+        {
+            return chunk == null;
+        }
+    }
+}
@@ -1,12 +1,24 @@
 package com.novarto.lang.effect;
 
+import com.novarto.lang.ConcurrentUtil;
 import fj.*;
 import fj.data.Validation;
 import fj.function.Try0;
 
-import static fj.P.lazy;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.LongSupplier;
+
 import static fj.data.Validation.fail;
 import static fj.data.Validation.success;
+import static java.text.MessageFormat.format;
 
 /**
  *
@@ -14,22 +26,38 @@ import static fj.data.Validation.success;
  * with a successful result of type A, or fail with an error of type E.
  *
  * A LazyEffect can be transformed and composed via map and bind (a.k.a. flatMap). That is, LazyEffect is a monad.
+ * Independent lazy effects can also be composed via zip, par2..par5 and parTraverse, which evaluate them concurrently
+ * and accumulate their errors with a Semigroup, the way Validation does.
  *
- * The effect described can be evaluated via run(), which returns a Validation[E, A]
+ * The effect described can be evaluated via run(), which returns a Validation[E, A], or without blocking the calling
+ * thread via runAsync(), which returns a CompletableFuture[Validation[E, A]]
  *
  * An impure (side-effecting, non referentially transparent) computation can be lifted to a pure LazyEffect
  * via LazyEffect.effect()
  *
  * A pure value can be lifted to a LazyEffect via pure() and error()
  *
- * LazyEffect is isomorphic to a P1[Validation[E, A]], and uses P1[Validation[E, A]] as an underlying representation.
+ * An asynchronous computation, e.g. non-blocking I/O, can be lifted to a LazyEffect via LazyEffect.async(). When
+ * evaluated via runAsync(), no thread is blocked while it is in progress.
+ *
+ * A resource, e.g. a file channel or a pooled buffer, can be used safely via LazyEffect.bracket(), or via
+ * {@link Resource}, which composes brackets: it is released however its use terminates.
+ *
+ * LazyEffect is isomorphic to a P1[Validation[E, A]].
  *
- * You can obtain a lazy effect's underlying representation via {@link LazyEffect#p}.
+ * You can obtain a lazy effect as a P1 via {@link LazyEffect#p}.
  * You can construct a lazy effect from a P1 via {@link LazyEffect#fromP1(P1)}.
  *
  * This isomorphism allows to cache the side effect of a lazy effect, by taking a lazy effect's underlying P1,
- * calling one of its memo() methods, and constructing a new lazy effect with the memoized P1.
+ * calling one of its memo() methods, and constructing a new lazy effect with the memoized P1. This caches the result
+ * forever, even if it is a failure; memoizeSuccess() offers caching of successes only, with optional expiry and
+ * refresh-ahead.
  *
+ * Internally, a lazy effect is a tree of instructions: a pure value, an error, a suspended or asynchronous
+ * computation, a continuation applied to the result of another lazy effect, which is what map, bind and mapError
+ * build, or a bracket.
+ * run() interprets the tree in a loop with an explicit stack of pending continuations, so arbitrarily long chains of
+ * bind, nested either way, are evaluated in constant call stack depth.
  *
  * @param <E> the error type
  * @param <A> the success type
@@ -37,11 +65,17 @@ import static fj.data.Validation.success;
 public final class LazyEffect<E, A>
 {
 
+    /**
+     * This lazy effect as a P1. Evaluating it is the same as calling {@link #run()}.
+     */
     public final P1<Validation<E, A>> p;
 
-    private LazyEffect(P1<Validation<E, A>> p)
+    private final Instr<E, A> instr;
+
+    private LazyEffect(Instr<E, A> instr)
     {
-        this.p = p;
+        this.instr = instr;
+        this.p = instr;
     }
 
     /**
@@ -49,7 +83,7 @@ public final class LazyEffect<E, A>
      */
     public static <E, A> LazyEffect<E, A> pure(A a)
     {
-        return new LazyEffect<>(lazy(() -> success(a)));
+        return new LazyEffect<>(new Pure<>(a));
     }
 
     /**
@@ -57,7 +91,7 @@ public final class LazyEffect<E, A>
      */
     public static <E, A> LazyEffect<E, A> pure(F0<A> a)
     {
-        return new LazyEffect<>(lazy(a).map(Validation::success));
+        return new LazyEffect<>(new Suspend<>(() -> success(a.f())));
     }
 
     /**
@@ -65,7 +99,7 @@ public final class LazyEffect<E, A>
      */
     public static <E, A> LazyEffect<E, A> error(E e)
     {
-        return new LazyEffect<>(lazy(() -> fail(e)));
+        return new LazyEffect<>(new Fail<>(e));
     }
 
     /**
@@ -73,7 +107,7 @@ public final class LazyEffect<E, A>
      */
     public static <E, A> LazyEffect<E, A> error(F0<E> e)
     {
-        return new LazyEffect<>(lazy(e).map(Validation::fail));
+        return new LazyEffect<>(new Suspend<>(() -> fail(e.f())));
     }
 
     /**
@@ -81,28 +115,77 @@ public final class LazyEffect<E, A>
      */
     public static <E extends Exception, A> LazyEffect<E, A> effect(Try0<A, E> effect)
     {
-        return new LazyEffect<>(Try.f(effect));
+        return new LazyEffect<>(new Suspend<>(Try.f(effect)));
+    }
+
+    /**
+     * Lift an asynchronous computation to a lazy effect. The computation is started each time the effect is evaluated,
+     * by invoking start. When evaluated via {@link #runAsync(Executor)}, no thread waits for the returned stage;
+     * evaluation resumes on the executor once it completes. If the stage completes exceptionally, evaluation
+     * terminates with that exception, rather than with an error of type E.
+     */
+    public static <E, A> LazyEffect<E, A> async(F0<? extends CompletionStage<? extends Validation<E, A>>> start)
+    {
+        return new LazyEffect<>(new Async<>(start));
+    }
+
+    /**
+     * Create a lazy effect which, when evaluated, obtains another lazy effect from f and evaluates it
+     */
+    public static <E, A> LazyEffect<E, A> defer(F0<LazyEffect<E, A>> f)
+    {
+        return new LazyEffect<>(new FlatMap<>(new Pure<E, Unit>(Unit.unit()), u -> f.f().instr, null));
+    }
+
+    /**
+     * Create a lazy effect which acquires a resource, applies use to it, and then releases it. If acquire succeeds,
+     * release is evaluated exactly once, however use terminates: with a success, with an error, by throwing, or by
+     * the evaluation being abandoned, e.g. because it timed out, or because the future returned by
+     * {@link #runAsync(Executor)} was cancelled. The resource is never released while still in use: cancelling a stage
+     * does not stop the operation behind it, so an asynchronous step in progress when the evaluation is abandoned is
+     * not cancelled while a resource is held, and the resource is released once that step has completed.
+     *
+     * The result is that of use, unless use succeeds and release fails, in which case it is the error of release.
+     * Neither acquisition nor release is ever abandoned halfway, as that would leak the resource.
+     */
+    public static <E, R, A> LazyEffect<E, A> bracket(LazyEffect<E, R> acquire, F<R, LazyEffect<E, A>> use,
+            F<R, LazyEffect<E, Unit>> release)
+    {
+        return new LazyEffect<>(new Bracket<>(acquire.instr, r -> use.f(r).instr, r -> release.f(r).instr));
+    }
+
+    /**
+     * Create a lazy effect which succeeds after the given delay. When evaluated via {@link #runAsync(Executor)},
+     * no thread waits for the delay to pass.
+     */
+    public static <E> LazyEffect<E, Unit> sleep(Duration delay)
+    {
+        return async(() -> Delays.after(delay.toNanos()).thenApply(Validation::success));
     }
 
     /**
      * Constructs a LazyEffect from its underlying representation, P1<Validation<E, A>>
      */
+    @SuppressWarnings("unchecked")
     public static <E, A> LazyEffect<E, A> fromP1(P1<Validation<E, A>> p)
     {
-        return new LazyEffect<>(p);
+        if (p instanceof Instr)
+        {
+            //the P1 of another lazy effect, no need to wrap it
+            return new LazyEffect<>((Instr<E, A>) p);
+        }
+        return new LazyEffect<>(new Suspend<>(p));
     }
 
 
     public <B> LazyEffect<E, B> map(F<A, B> f)
     {
-        return new LazyEffect<>(p.map(v -> v.map(f)));
+        return new LazyEffect<>(new FlatMap<>(instr, x -> new Pure<>(f.f(x)), null));
     }
 
     public <B> LazyEffect<E, B> bind(F<A, LazyEffect<E, B>> f)
     {
-        return new LazyEffect<>(
-                this.p.map(v -> v.bind(x -> f.f(x).p.f()))
-        );
+        return new LazyEffect<>(new FlatMap<>(instr, x -> f.f(x).instr, null));
     }
 
     /**
@@ -110,17 +193,668 @@ public final class LazyEffect<E, A>
      */
     public <E1> LazyEffect<E1, A> mapError(F<E, E1> f)
     {
-        return new LazyEffect<>(this.p.map(x -> Validation.validation(x.toEither().left().map(f))));
+        return new LazyEffect<>(new FlatMap<>(instr, null, e -> new Fail<>(f.f(e))));
+    }
+
+    /**
+     * Handle this lazy effect's error by continuing with the lazy effect returned by f. A success is left as is.
+     */
+    public LazyEffect<E, A> recoverWith(F<E, LazyEffect<E, A>> f)
+    {
+        return new LazyEffect<>(new FlatMap<>(instr, null, e -> f.f(e).instr));
+    }
+
+    /**
+     * Create a lazy effect which evaluates this one, and evaluates it again after a delay if it fails with a
+     * retryable error, as specified by the given policy. Delays do not block a thread when evaluated via
+     * {@link #runAsync(Executor)}.
+     */
+    public LazyEffect<E, A> retry(Retry<E> policy)
+    {
+        return policy.apply(this);
+    }
+
+    /**
+     * Create a lazy effect which evaluates this one, and fails with the error supplied by onTimeout if that does not
+     * complete within the given time limit.
+     */
+    public LazyEffect<E, A> timeout(Timeout timeout, F0<E> onTimeout)
+    {
+        return timeout.apply(this, onTimeout);
+    }
+
+    /**
+     * Create a lazy effect which evaluates this one if the given circuit breaker lets it through, and records the
+     * outcome with the breaker. Otherwise it fails with the error supplied by onOpen, without evaluating this effect.
+     */
+    public LazyEffect<E, A> withCircuitBreaker(CircuitBreaker breaker, F0<E> onOpen)
+    {
+        return breaker.apply(this, onOpen);
+    }
+
+    /**
+     * Create a lazy effect which evaluates this one at most once successfully, and from then on succeeds with the
+     * same value. Failures are not cached, so the next evaluation after a failure tries again. Concurrent
+     * evaluations share a single evaluation of this effect.
+     *
+     * Unlike the other combinators, this one returns a stateful effect: the cache belongs to the returned instance.
+     */
+    public LazyEffect<E, A> memoizeSuccess()
+    {
+        return memoize(Long.MAX_VALUE, 0, null, System::nanoTime);
+    }
+
+    /**
+     * Same as {@link #memoizeSuccess()}, but a cached value expires after the given time to live, after which the
+     * next evaluation evaluates this effect again.
+     */
+    public LazyEffect<E, A> memoizeSuccess(Duration ttl)
+    {
+        return memoize(ttl.toNanos(), 0, null, System::nanoTime);
+    }
+
+    /**
+     * Same as {@link #memoizeSuccess(Duration)}, but once a cached value is within refreshAhead of its expiry, the
+     * first evaluation to notice starts a refresh on the given executor, and every evaluation keeps succeeding with
+     * the cached value meanwhile. Thus, as long as the effect is evaluated regularly and refreshes succeed, callers
+     * never wait for it. A failed refresh keeps the cached value until it expires.
+     */
+    public LazyEffect<E, A> memoizeSuccess(Duration ttl, Duration refreshAhead, Executor executor)
+    {
+        if (refreshAhead.isNegative() || refreshAhead.compareTo(ttl) > 0)
+        {
+            throw new IllegalArgumentException(
+                    format("refreshAhead must be between 0 and the ttl {0}, but was {1}", ttl, refreshAhead));
+        }
+        return memoize(ttl.toNanos(), refreshAhead.toNanos(), executor, System::nanoTime);
+    }
+
+    LazyEffect<E, A> memoize(long ttlNanos, long refreshAheadNanos, Executor executor, LongSupplier clock)
+    {
+        Memo<E, A> memo = new Memo<>(this, ttlNanos, refreshAheadNanos, executor, clock);
+        return async(memo::get);
+    }
+
+    /**
+     * Combine two independent lazy effects into one, which evaluates both of them concurrently on the given executor.
+     * If both succeed, the result is the pair of their values. Otherwise it is the failure of all the errors, summed
+     * with the given semigroup in argument order, the way Validation accumulates errors.
+     */
+    public static <E, A, B> LazyEffect<E, P2<A, B>> zip(LazyEffect<E, A> a, LazyEffect<E, B> b, Semigroup<E> s,
+            Executor executor)
+    {
+        return par2(a, b, P::p, s, executor);
+    }
+
+    /**
+     * Evaluate two independent lazy effects concurrently on the given executor, and combine their values with f.
+     * Errors are accumulated as in {@link #zip(LazyEffect, LazyEffect, Semigroup, Executor)}.
+     */
+    @SuppressWarnings("unchecked")
+    public static <E, A, B, C> LazyEffect<E, C> par2(LazyEffect<E, A> a, LazyEffect<E, B> b, F2<A, B, C> f,
+            Semigroup<E> s, Executor executor)
+    {
+        return parAll(s, executor, a, b).map(xs -> f.f((A) xs.get(0), (B) xs.get(1)));
+    }
+
+    /**
+     * Evaluate three independent lazy effects concurrently on the given executor, and combine their values with f.
+     * Errors are accumulated as in {@link #zip(LazyEffect, LazyEffect, Semigroup, Executor)}.
+     */
+    @SuppressWarnings("unchecked")
+    public static <E, A, B, C, D> LazyEffect<E, D> par3(LazyEffect<E, A> a, LazyEffect<E, B> b, LazyEffect<E, C> c,
+            F3<A, B, C, D> f, Semigroup<E> s, Executor executor)
+    {
+        return parAll(s, executor, a, b, c).map(xs -> f.f((A) xs.get(0), (B) xs.get(1), (C) xs.get(2)));
+    }
+
+    /**
+     * Evaluate four independent lazy effects concurrently on the given executor, and combine their values with f.
+     * Errors are accumulated as in {@link #zip(LazyEffect, LazyEffect, Semigroup, Executor)}.
+     */
+    @SuppressWarnings("unchecked")
+    public static <E, A, B, C, D, R> LazyEffect<E, R> par4(LazyEffect<E, A> a, LazyEffect<E, B> b,
+            LazyEffect<E, C> c, LazyEffect<E, D> d, F4<A, B, C, D, R> f, Semigroup<E> s, Executor executor)
+    {
+        return parAll(s, executor, a, b, c, d)
+                .map(xs -> f.f((A) xs.get(0), (B) xs.get(1), (C) xs.get(2), (D) xs.get(3)));
+    }
+
+    /**
+     * Evaluate five independent lazy effects concurrently on the given executor, and combine their values with f.
+     * Errors are accumulated as in {@link #zip(LazyEffect, LazyEffect, Semigroup, Executor)}.
+     */
+    @SuppressWarnings("unchecked")
+    public static <E, A, B, C, D, G, R> LazyEffect<E, R> par5(LazyEffect<E, A> a, LazyEffect<E, B> b,
+            LazyEffect<E, C> c, LazyEffect<E, D> d, LazyEffect<E, G> g, F5<A, B, C, D, G, R> f, Semigroup<E> s,
+            Executor executor)
+    {
+        return parAll(s, executor, a, b, c, d, g)
+                .map(xs -> f.f((A) xs.get(0), (B) xs.get(1), (C) xs.get(2), (D) xs.get(3), (G) xs.get(4)));
+    }
+
+    /**
+     * Apply f to every element, and evaluate the resulting lazy effects concurrently on the given executor, with at
+     * most maxConcurrency of them in progress at any time. Elements are consumed lazily, as earlier effects complete.
+     * If all of the effects succeed, the result is the list of their values, in input order. Otherwise it is the
+     * failure of all the errors, summed with the given semigroup in input order. If the evaluation is abandoned, e.g.
+     * because it timed out, no further elements are started, and the evaluations in progress are abandoned too.
+     */
+    public static <E, A, B> LazyEffect<E, List<B>> parTraverse(Iterable<A> xs, F<A, LazyEffect<E, B>> f,
+            int maxConcurrency, Semigroup<E> s, Executor executor)
+    {
+        ParTraversal.checkConcurrency(maxConcurrency);
+        return async(() -> {
+            CompletableFuture<List<Validation<E, B>>> traversal = ParTraversal.start(xs, f, maxConcurrency, executor);
+            CompletableFuture<Validation<E, List<B>>> result =
+                    traversal.thenApply(vs -> ParTraversal.accumulate(s, vs));
+            //the interpreter cancels the stage it awaits, which must stop the traversal itself
+            result.whenComplete((v, t) -> traversal.cancel(false));
+            return result;
+        });
+    }
+
+    /**
+     * Same as {@link #parTraverse(Iterable, F, int, Semigroup, Executor)} with the identity function
+     */
+    public static <E, A> LazyEffect<E, List<A>> parSequence(Iterable<LazyEffect<E, A>> effects, int maxConcurrency,
+            Semigroup<E> s, Executor executor)
+    {
+        return parTraverse(effects, x -> x, maxConcurrency, s, executor);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> LazyEffect<E, List<Object>> parAll(Semigroup<E> s, Executor executor,
+            LazyEffect<E, ?>... effects)
+    {
+        return parTraverse(Arrays.asList(effects), x -> (LazyEffect<E, Object>) x, effects.length, s, executor);
     }
 
     /**
      * Evaluate this lazy effect, and return its result/
+     * Asynchronous steps (see {@link #async(F0)}) are awaited by blocking the calling thread.
      */
     public Validation<E, A> run()
     {
-        return p.f();
+        return instr._1();
+    }
+
+    /**
+     * Evaluate this lazy effect on the given executor, without blocking the calling thread.
+     * Evaluation starts on the executor, and resumes on it after each asynchronous step (see {@link #async(F0)}),
+     * so no thread is blocked while waiting for one.
+     * If a computation throws rather than producing an error of type E, the returned future completes exceptionally.
+     */
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<Validation<E, A>> runAsync(Executor executor)
+    {
+        Interpreter interpreter = new Interpreter(instr, executor);
+        executor.execute(interpreter);
+        return (CompletableFuture<Validation<E, A>>) (CompletableFuture<?>) interpreter.result;
+    }
+
+    /**
+     * Evaluate this lazy effect asynchronously, on a new virtual thread if the running JDK supports them, or
+     * otherwise on the common fork join pool. Same as {@link #runAsync(Executor)} with {@link #defaultExecutor()}.
+     */
+    public CompletableFuture<Validation<E, A>> runAsync()
+    {
+        return runAsync(defaultExecutor());
+    }
+
+    /**
+     * The executor used by {@link #runAsync()}: a virtual-thread-per-task executor if the running JDK supports
+     * virtual threads, otherwise the common fork join pool.
+     */
+    public static Executor defaultExecutor()
+    {
+        return DefaultExecutor.INSTANCE;
+    }
+
+    private static final class DefaultExecutor
+    {
+        private static final Executor INSTANCE = ConcurrentUtil.newVirtualThreadPerTaskExecutor()
+                .<Executor>map(x -> x).orElseGet(ForkJoinPool::commonPool);
+    }
+
+    /**
+     * Interprets an instruction tree. The result of the instruction last evaluated is kept unboxed in (ok, value);
+     * continuations which do not apply to it are skipped, so e.g. a failure passes through a chain of binds without
+     * allocating.
+     *
+     * Without an executor, asynchronous steps are awaited by blocking. With one, the interpreter returns when it
+     * reaches an asynchronous step, and is resumed on the executor once it completes; the outcome is then
+     * delivered through the result future.
+     *
+     * Besides continuations, the stack holds the frames of brackets: a {@link Bracket} while its resource is being
+     * acquired, a {@link Release} while it is in use, and a {@link Restore} while it is being released. Whenever
+     * evaluation stops early, because something threw or because the result future was completed from the outside,
+     * the releases still on the stack are evaluated, innermost first, before the interpreter gives up.
+     */
+    private static final class Interpreter implements Runnable
+    {
+        private final Executor executor;
+        private final CompletableFuture<Validation<Object, Object>> result;
+        private ArrayDeque<Object> conts;
+        private Instr<?, ?> current;
+        private boolean ok;
+        private Object value;
+
+        //the number of brackets whose resource is being acquired. Acquisition is not abandoned, or the resource
+        //would leak; it is released as soon as it has been acquired instead
+        private volatile int acquiring;
+
+        //the number of releases in progress. A release is not abandoned halfway either, or the resource would leak;
+        //the evaluation is abandoned once it has completed
+        private volatile int releasing;
+
+        //the number of resources acquired and not released yet. While any are held, the asynchronous step being
+        //awaited may be using them, so it is left to complete rather than cancelled
+        private volatile int held;
+
+        //the asynchronous step being awaited, cancelled if the evaluation is abandoned
+        private volatile CompletableFuture<?> pending;
+
+        private Interpreter(Instr<?, ?> root, Executor executor)
+        {
+            this.current = root;
+            this.executor = executor;
+            this.result = executor == null ? null : new CompletableFuture<>();
+            if (result != null)
+            {
+                result.whenComplete((v, t) -> cancelPending());
+            }
+        }
+
+        /**
+         * Evaluate from the current instruction, until there is nothing left to do, or, if running on an executor,
+         * until an asynchronous step is reached. If anything throws, pending releases are evaluated first.
+         *
+         * @return the outcome, or null if suspended at an asynchronous step
+         */
+        private Validation<Object, Object> loop()
+        {
+            try
+            {
+                return step();
+            }
+            catch (Throwable t)
+            {
+                releaseAll(t);
+                throw t;
+            }
+        }
+
+        private Validation<Object, Object> step()
+        {
+            while (true)
+            {
+                if (abandoned())
+                {
+                    //completed from the outside, e.g. timed out: abandon the evaluation
+                    releaseAll(null);
+                    return null;
+                }
+                if (current instanceof FlatMap || current instanceof Bracket)
+                {
+                    if (conts == null)
+                    {
+                        conts = new ArrayDeque<>();
+                    }
+                    conts.push(current);
+                    if (current instanceof FlatMap)
+                    {
+                        current = ((FlatMap<?, ?, ?, ?>) current).source;
+                    }
+                    else
+                    {
+                        acquiring++;
+                        current = ((Bracket<?, ?, ?>) current).acquire;
+                    }
+                    continue;
+                }
+                else if (current instanceof Pure)
+                {
+                    ok = true;
+                    value = ((Pure<?, ?>) current).value;
+                }
+                else if (current instanceof Fail)
+                {
+                    ok = false;
+                    value = ((Fail<?, ?>) current).error;
+                }
+                else if (current instanceof Suspend)
+                {
+                    settle(((Suspend<?, ?>) current).thunk.f());
+                }
+                else
+                {
+                    CompletionStage<? extends Validation<?, ?>> stage = ((Async<?, ?>) current).start.f();
+                    //a stage which is already complete is continued right away, rather than via the executor
+                    boolean done = stage instanceof CompletableFuture && ((CompletableFuture<?>) stage).isDone();
+                    if (executor != null && !done)
+                    {
+                        if (stage instanceof CompletableFuture)
+                        {
+                            pending = (CompletableFuture<?>) stage;
+                        }
+                        stage.whenCompleteAsync(this::resume, executor);
+                        if (result.isDone())
+                        {
+                            cancelPending();
+                        }
+                        return null;
+                    }
+                    settle(join(stage));
+                }
+
+                if (!unwind())
+                {
+                    return ok ? success(value) : fail(value);
+                }
+            }
+        }
+
+        /**
+         * Evaluate on the executor, and complete the result future unless suspended
+         */
+        @Override
+        public void run()
+        {
+            try
+            {
+                Validation<Object, Object> outcome = loop();
+                if (outcome != null)
+                {
+                    result.complete(outcome);
+                }
+            }
+            catch (Throwable t)
+            {
+                result.completeExceptionally(t);
+            }
+        }
+
+        private void resume(Validation<?, ?> v, Throwable t)
+        {
+            pending = null;
+            try
+            {
+                if (t != null)
+                {
+                    throw t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+                }
+                settle(v);
+                if (abandoned())
+                {
+                    releaseAll(null);
+                    return;
+                }
+                if (!unwind())
+                {
+                    result.complete(ok ? success(value) : fail(value));
+                    return;
+                }
+            }
+            catch (Throwable e)
+            {
+                releaseAll(e);
+                result.completeExceptionally(e);
+                return;
+            }
+            run();
+        }
+
+        private boolean abandoned()
+        {
+            return result != null && result.isDone() && acquiring == 0 && releasing == 0;
+        }
+
+        private void cancelPending()
+        {
+            CompletableFuture<?> stage = pending;
+            if (stage != null && acquiring == 0 && releasing == 0 && held == 0)
+            {
+                stage.cancel(false);
+            }
+        }
+
+        private void settle(Validation<?, ?> v)
+        {
+            ok = v.isSuccess();
+            value = ok ? v.success() : v.fail();
+        }
+
+        /**
+         * Apply the innermost pending continuation which handles the current outcome
+         *
+         * @return false if there is none, i.e. the current outcome is final
+         */
+        @SuppressWarnings("unchecked")
+        private boolean unwind()
+        {
+            while (conts != null && !conts.isEmpty())
+            {
+                Object frame = conts.pop();
+                if (frame instanceof FlatMap)
+                {
+                    FlatMap<?, ?, ?, ?> fm = (FlatMap<?, ?, ?, ?>) frame;
+                    F<Object, Instr<?, ?>> k = (F<Object, Instr<?, ?>>) (ok ? fm.onSuccess : fm.onFailure);
+                    if (k != null)
+                    {
+                        current = k.f(value);
+                        return true;
+                    }
+                }
+                else if (frame instanceof Bracket)
+                {
+                    //the release is on the stack before use is invoked, so that it runs even if use throws
+                    acquiring--;
+                    if (ok)
+                    {
+                        Bracket<?, ?, ?> bracket = (Bracket<?, ?, ?>) frame;
+                        conts.push(new Release(bracket.release, value));
+                        held++;
+                        current = ((F<Object, Instr<?, ?>>) bracket.use).f(value);
+                        return true;
+                    }
+                }
+                else if (frame instanceof Release)
+                {
+                    conts.push(new Restore(ok, value));
+                    releasing++;
+                    current = ((Release) frame).instr();
+                    return true;
+                }
+                else
+                {
+                    //the release is done. If it failed, its error only replaces a success
+                    Restore outcome = (Restore) frame;
+                    releasing--;
+                    held--;
+                    if (ok || !outcome.ok)
+                    {
+                        ok = outcome.ok;
+                        value = outcome.value;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Evaluate the releases left on the stack, innermost first, discarding everything else. Their errors are
+         * dropped, as there is an outcome already, and their exceptions are suppressed by the given one, if any.
+         */
+        private void releaseAll(Throwable cause)
+        {
+            while (conts != null && !conts.isEmpty())
+            {
+                Object frame = conts.pop();
+                if (!(frame instanceof Release))
+                {
+                    continue;
+                }
+                try
+                {
+                    new Interpreter(((Release) frame).instr(), null).loop();
+                }
+                catch (Throwable t)
+                {
+                    if (cause != null && cause != t)
+                    {
+                        cause.addSuppressed(t);
+                    }
+                }
+            }
+            releasing = 0;
+            held = 0;
+        }
+
+        private static <V> V join(CompletionStage<V> stage)
+        {
+            try
+            {
+                return stage.toCompletableFuture().join();
+            }
+            catch (CompletionException e)
+            {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException)
+                {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error)
+                {
+                    throw (Error) cause;
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * An instruction. It is a P1 so that it can serve as the lazy effect's {@link #p} without another allocation.
+     */
+    private abstract static class Instr<E, A> extends P1<Validation<E, A>>
+    {
+        @Override
+        @SuppressWarnings("unchecked")
+        public Validation<E, A> _1()
+        {
+            return (Validation<E, A>) (Validation<?, ?>) new Interpreter(this, null).loop();
+        }
+    }
+
+    private static final class Pure<E, A> extends Instr<E, A>
+    {
+        private final A value;
+
+        private Pure(A value)
+        {
+            this.value = value;
+        }
+    }
+
+    private static final class Fail<E, A> extends Instr<E, A>
+    {
+        private final E error;
+
+        private Fail(E error)
+        {
+            this.error = error;
+        }
+    }
+
+    private static final class Suspend<E, A> extends Instr<E, A>
+    {
+        private final F0<Validation<E, A>> thunk;
+
+        private Suspend(F0<Validation<E, A>> thunk)
+        {
+            this.thunk = thunk;
+        }
+    }
+
+    private static final class Async<E, A> extends Instr<E, A>
+    {
+        private final F0<? extends CompletionStage<? extends Validation<E, A>>> start;
+
+        private Async(F0<? extends CompletionStage<? extends Validation<E, A>>> start)
+        {
+            this.start = start;
+        }
+    }
+
+    /**
+     * Continues with onSuccess or onFailure, depending on the result of source. A null continuation passes the
+     * result through unchanged.
+     */
+    private static final class FlatMap<E0, A0, E, A> extends Instr<E, A>
+    {
+        private final Instr<E0, A0> source;
+        private final F<A0, Instr<E, A>> onSuccess;
+        private final F<E0, Instr<E, A>> onFailure;
+
+        private FlatMap(Instr<E0, A0> source, F<A0, Instr<E, A>> onSuccess, F<E0, Instr<E, A>> onFailure)
+        {
+            this.source = source;
+            this.onSuccess = onSuccess;
+            this.onFailure = onFailure;
+        }
     }
 
+    /**
+     * Acquires a resource, uses it, and releases it, whatever the outcome of using it
+     */
+    private static final class Bracket<E, R, A> extends Instr<E, A>
+    {
+        private final Instr<E, R> acquire;
+        private final F<R, Instr<E, A>> use;
+        private final F<R, Instr<E, Unit>> release;
 
+        private Bracket(Instr<E, R> acquire, F<R, Instr<E, A>> use, F<R, Instr<E, Unit>> release)
+        {
+            this.acquire = acquire;
+            this.use = use;
+            this.release = release;
+        }
+    }
+
+    /**
+     * The frame of an acquired resource which is in use
+     */
+    private static final class Release
+    {
+        private final F<?, ? extends Instr<?, Unit>> release;
+        private final Object resource;
+
+        private Release(F<?, ? extends Instr<?, Unit>> release, Object resource)
+        {
+            this.release = release;
+            this.resource = resource;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Instr<?, Unit> instr()
+        {
+            return ((F<Object, Instr<?, Unit>>) release).f(resource);
+        }
+    }
+
+    /**
+     * The frame of a resource being released, holding the outcome of using it
+     */
+    private static final class Restore
+    {
+        private final boolean ok;
+        private final Object value;
+
+        private Restore(boolean ok, Object value)
+        {
+            this.ok = ok;
+            this.value = value;
+        }
+    }
 
 }
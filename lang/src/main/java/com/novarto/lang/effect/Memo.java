@@ -0,0 +1,151 @@
+package com.novarto.lang.effect;
+
+import fj.data.Validation;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.LongSupplier;
+
+/**
+ * A thread-safe cache cell for the successful result of a lazy effect.
+ *
+ * Failures are never cached. A cached success expires after a time to live, and optionally is refreshed in the
+ * background once it is within a refresh-ahead window of expiry, while callers keep getting the cached value.
+ * At most one evaluation of the effect is in flight at any time; concurrent callers which cannot be served from the
+ * cache share it.
+ *
+ * Reading a fresh cached value is a single volatile read, without locking.
+ *
+ * Every caller gets its own future, so that one of them cancelling it, e.g. an abandoned evaluation, does not affect
+ * the others.
+ */
+final class Memo<E, A>
+{
+    private static final Executor DIRECT = Runnable::run;
+
+    private final LazyEffect<E, A> effect;
+    private final long ttlNanos;
+    private final long refreshAheadNanos;
+    private final Executor refreshExecutor;
+    private final LongSupplier clock;
+
+    private volatile Entry<E, A> entry;
+
+    //guarded by this
+    private CompletableFuture<Validation<E, A>> inFlight;
+
+    /**
+     * @param ttlNanos          the time to live of a cached success, Long.MAX_VALUE for no expiry
+     * @param refreshAheadNanos how long before expiry a background refresh is started, 0 for no refresh
+     * @param refreshExecutor   the executor to refresh on, may be null if refreshAheadNanos is 0
+     * @param clock             the source of time in nanoseconds, as System.nanoTime()
+     */
+    Memo(LazyEffect<E, A> effect, long ttlNanos, long refreshAheadNanos, Executor refreshExecutor, LongSupplier clock)
+    {
+        this.effect = effect;
+        this.ttlNanos = ttlNanos;
+        this.refreshAheadNanos = refreshAheadNanos;
+        this.refreshExecutor = refreshExecutor;
+        this.clock = clock;
+    }
+
+    /**
+     * The cached success if it has not expired, otherwise the outcome of an evaluation which is in flight, or of a
+     * new one. A new evaluation runs on the calling thread until its first asynchronous step, if any.
+     */
+    CompletableFuture<Validation<E, A>> get()
+    {
+        Entry<E, A> cached = entry;
+        long now = clock.getAsLong();
+        if (cached != null && now - cached.expiresAt < 0)
+        {
+            if (refreshAheadNanos > 0 && now - cached.refreshAt >= 0)
+            {
+                refresh(cached);
+            }
+            return CompletableFuture.completedFuture(cached.value);
+        }
+
+        CompletableFuture<Validation<E, A>> result;
+        synchronized (this)
+        {
+            if (inFlight != null)
+            {
+                return inFlight.thenApply(x -> x);
+            }
+            //another caller may have completed an evaluation meanwhile
+            cached = entry;
+            if (cached != null && clock.getAsLong() - cached.expiresAt < 0)
+            {
+                return CompletableFuture.completedFuture(cached.value);
+            }
+            result = inFlight = new CompletableFuture<>();
+        }
+        evaluate(result, DIRECT);
+        return result.thenApply(x -> x);
+    }
+
+    private void refresh(Entry<E, A> stale)
+    {
+        CompletableFuture<Validation<E, A>> result;
+        synchronized (this)
+        {
+            if (inFlight != null || entry != stale)
+            {
+                return;
+            }
+            result = inFlight = new CompletableFuture<>();
+        }
+        evaluate(result, refreshExecutor);
+    }
+
+    private void evaluate(CompletableFuture<Validation<E, A>> result, Executor executor)
+    {
+        CompletableFuture<Validation<E, A>> evaluation;
+        try
+        {
+            evaluation = effect.runAsync(executor);
+        }
+        catch (Throwable t)
+        {
+            evaluation = new CompletableFuture<>();
+            evaluation.completeExceptionally(t);
+        }
+
+        evaluation.whenComplete((v, t) -> {
+            synchronized (this)
+            {
+                if (t == null && v.isSuccess())
+                {
+                    long now = clock.getAsLong();
+                    //the deadlines are compared by subtraction, as System.nanoTime() values must be, so the sums may
+                    //overflow harmlessly
+                    entry = new Entry<>(v, now + ttlNanos - refreshAheadNanos, now + ttlNanos);
+                }
+                inFlight = null;
+            }
+            if (t != null)
+            {
+                result.completeExceptionally(t);
+            }
+            else
+            {
+                result.complete(v);
+            }
+        });
+    }
+
+    private static final class Entry<E, A>
+    {
+        private final Validation<E, A> value;
+        private final long refreshAt;
+        private final long expiresAt;
+
+        private Entry(Validation<E, A> value, long refreshAt, long expiresAt)
+        {
+            this.value = value;
+            this.refreshAt = refreshAt;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
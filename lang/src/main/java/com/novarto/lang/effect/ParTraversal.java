@@ -0,0 +1,209 @@
+package com.novarto.lang.effect;
+
+import fj.F;
+import fj.Semigroup;
+import fj.data.Validation;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.text.MessageFormat.format;
+
+/**
+ * Evaluates the lazy effects obtained by applying a function to every element of an iterable, concurrently on an
+ * executor, keeping at most maxConcurrency of them in progress at any time. Elements are pulled from the iterator
+ * lazily, as earlier effects complete.
+ *
+ * The iterator and the function are only ever invoked by one thread at a time, from within {@link #drain()}, which is
+ * guarded by a work-in-progress counter rather than recursion.
+ *
+ * Every effect is evaluated even if some fail, so that all errors can be accumulated. If the evaluation of an effect
+ * throws, the traversal completes exceptionally. Once the traversal is complete, whether that way or by being
+ * cancelled, it starts no further effects, and abandons the evaluations still in progress.
+ */
+final class ParTraversal<A, E, B>
+{
+    private final Iterator<? extends A> xs;
+    private final F<A, LazyEffect<E, B>> f;
+    private final int maxConcurrency;
+    private final Executor executor;
+    private final CompletableFuture<List<Validation<E, B>>> result = new CompletableFuture<>();
+
+    private final AtomicInteger wip = new AtomicInteger();
+
+    //only accessed from within drain
+    private boolean exhausted;
+
+    //guarded by this
+    private final List<Validation<E, B>> outcomes = new ArrayList<>();
+    private final List<CompletableFuture<Validation<E, B>>> running = new ArrayList<>();
+    private int inProgress;
+
+    private ParTraversal(Iterator<? extends A> xs, F<A, LazyEffect<E, B>> f, int maxConcurrency, Executor executor)
+    {
+        this.xs = xs;
+        this.f = f;
+        this.maxConcurrency = maxConcurrency;
+        this.executor = executor;
+        result.whenComplete((v, t) -> abandonRunning());
+    }
+
+    /**
+     * Start the traversal
+     *
+     * @return the outcomes of the effects, in input order. Cancelling it stops the traversal.
+     */
+    static <A, E, B> CompletableFuture<List<Validation<E, B>>> start(Iterable<? extends A> xs,
+            F<A, LazyEffect<E, B>> f, int maxConcurrency, Executor executor)
+    {
+        checkConcurrency(maxConcurrency);
+        ParTraversal<A, E, B> traversal = new ParTraversal<>(xs.iterator(), f, maxConcurrency, executor);
+        traversal.drain();
+        return traversal.result;
+    }
+
+    static void checkConcurrency(int maxConcurrency)
+    {
+        if (maxConcurrency <= 0)
+        {
+            throw new IllegalArgumentException(format("maxConcurrency must be positive, but was {0}", maxConcurrency));
+        }
+    }
+
+    /**
+     * Accumulate the outcomes: the success of all values if all of them succeeded, otherwise the sum of all the
+     * errors, in order
+     */
+    @SuppressWarnings("unchecked")
+    static <E, B> Validation<E, List<B>> accumulate(Semigroup<E> s, List<? extends Validation<E, ? extends B>> vs)
+    {
+        E errors = null;
+        boolean failed = false;
+        for (Validation<E, ? extends B> v : vs)
+        {
+            if (v.isFail())
+            {
+                errors = failed ? s.sum(errors, v.fail()) : v.fail();
+                failed = true;
+            }
+        }
+        if (failed)
+        {
+            return Validation.fail(errors);
+        }
+
+        List<B> values = new ArrayList<>(vs.size());
+        for (Validation<E, ? extends B> v : vs)
+        {
+            values.add(v.success());
+        }
+        return Validation.success(values);
+    }
+
+    private void drain()
+    {
+        if (wip.getAndIncrement() != 0)
+        {
+            return;
+        }
+        do
+        {
+            launch();
+        }
+        while (wip.decrementAndGet() != 0);
+    }
+
+    private void launch()
+    {
+        while (!result.isDone())
+        {
+            final int index;
+            synchronized (this)
+            {
+                if (inProgress >= maxConcurrency)
+                {
+                    return;
+                }
+                index = outcomes.size();
+            }
+
+            if (exhausted || !xs.hasNext())
+            {
+                exhausted = true;
+                boolean finished;
+                synchronized (this)
+                {
+                    finished = inProgress == 0;
+                }
+                if (finished)
+                {
+                    result.complete(outcomes);
+                }
+                return;
+            }
+
+            CompletableFuture<Validation<E, B>> outcome;
+            try
+            {
+                outcome = f.f(xs.next()).runAsync(executor);
+            }
+            catch (Throwable t)
+            {
+                result.completeExceptionally(t);
+                return;
+            }
+
+            synchronized (this)
+            {
+                outcomes.add(null);
+                running.add(outcome);
+                inProgress++;
+            }
+            if (result.isDone())
+            {
+                //completed while launching, after the evaluations in progress were abandoned
+                outcome.cancel(false);
+            }
+            outcome.whenComplete((v, t) -> complete(index, v, t));
+        }
+    }
+
+    private void complete(int index, Validation<E, B> v, Throwable t)
+    {
+        if (t != null)
+        {
+            result.completeExceptionally(t);
+            return;
+        }
+        synchronized (this)
+        {
+            outcomes.set(index, v);
+            running.set(index, null);
+            inProgress--;
+        }
+        drain();
+    }
+
+    /**
+     * Abandon the evaluations in progress, by completing their futures
+     */
+    private void abandonRunning()
+    {
+        List<CompletableFuture<Validation<E, B>>> abandoned;
+        synchronized (this)
+        {
+            abandoned = new ArrayList<>(running);
+        }
+        for (CompletableFuture<Validation<E, B>> outcome : abandoned)
+        {
+            if (outcome != null)
+            {
+                outcome.cancel(false);
+            }
+        }
+    }
+}
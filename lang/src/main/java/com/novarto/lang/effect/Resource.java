@@ -0,0 +1,95 @@
+package com.novarto.lang.effect;
+
+import fj.F;
+import fj.Unit;
+
+/**
+ *
+ * Resource is a pure description of how to acquire a value of type R which must be released after use, e.g. a file
+ * channel, a socket or a pooled buffer, and of how to release it. Acquiring it can fail with an error of type E.
+ *
+ * A resource is only ever acquired by {@link #use(F)}, which returns a lazy effect guaranteeing that the resource is
+ * released exactly once, however its use terminates; see {@link LazyEffect#bracket(LazyEffect, F, F)}.
+ *
+ * Resources compose via map and bind. A resource obtained via bind acquires both resources, and releases them in
+ * reverse order of acquisition. If acquiring the second one fails, the first one is released.
+ *
+ * @param <E> the error type
+ * @param <R> the type of the resource
+ */
+public abstract class Resource<E, R>
+{
+    private Resource()
+    {
+    }
+
+    /**
+     * A resource which is acquired by evaluating acquire, and released by evaluating the lazy effect returned by
+     * release
+     */
+    public static <E, R> Resource<E, R> make(LazyEffect<E, R> acquire, F<R, LazyEffect<E, Unit>> release)
+    {
+        return new Resource<E, R>()
+        {
+            @Override
+            public <B> LazyEffect<E, B> use(F<R, LazyEffect<E, B>> f)
+            {
+                return LazyEffect.bracket(acquire, f, release);
+            }
+        };
+    }
+
+    /**
+     * A value which needs no release, as a resource
+     */
+    public static <E, R> Resource<E, R> pure(R r)
+    {
+        return new Resource<E, R>()
+        {
+            @Override
+            public <B> LazyEffect<E, B> use(F<R, LazyEffect<E, B>> f)
+            {
+                return LazyEffect.defer(() -> f.f(r));
+            }
+        };
+    }
+
+    /**
+     * Create a lazy effect which acquires this resource, applies f to it, and releases it once the lazy effect
+     * returned by f has terminated
+     */
+    public abstract <B> LazyEffect<E, B> use(F<R, LazyEffect<E, B>> f);
+
+    /**
+     * A resource which is acquired and released the same way as this one, but is used via the given function of it
+     */
+    public <S> Resource<E, S> map(F<R, S> f)
+    {
+        Resource<E, R> self = this;
+        return new Resource<E, S>()
+        {
+            @Override
+            public <B> LazyEffect<E, B> use(F<S, LazyEffect<E, B>> g)
+            {
+                return self.use(r -> g.f(f.f(r)));
+            }
+        };
+    }
+
+    /**
+     * A resource which acquires this resource, and then the resource obtained from f. It is released by releasing
+     * them in reverse order.
+     */
+    public <S> Resource<E, S> bind(F<R, Resource<E, S>> f)
+    {
+        Resource<E, R> self = this;
+        return new Resource<E, S>()
+        {
+            @Override
+            public <B> LazyEffect<E, B> use(F<S, LazyEffect<E, B>> g)
+            {
+                return self.use(r -> f.f(r).use(g));
+            }
+        };
+    }
+}
@@ -0,0 +1,130 @@
+package com.novarto.lang.effect;
+
+import fj.F;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.text.MessageFormat.format;
+
+/**
+ * A retry policy for lazy effects, with exponential backoff and jitter. See {@link LazyEffect#retry(Retry)}.
+ *
+ * The delay before retry n (counting from 1) is initialDelay * multiplier^(n-1), capped at maxDelay, and then reduced
+ * by a random fraction of up to jitter, so that callers which failed together do not retry in lockstep.
+ *
+ * A policy is meant to be shared by all the effects retried the same way, e.g. the calls to one service; it counts
+ * their attempts, retries and exhausted retries.
+ *
+ * @param <E> the error type of the retried effects
+ */
+public final class Retry<E>
+{
+    private final int maxAttempts;
+    private final long initialDelayNanos;
+    private final long maxDelayNanos;
+    private final double multiplier;
+    private final double jitter;
+    private final F<E, Boolean> retryable;
+
+    private final LongAdder attempts = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+
+    /**
+     * A policy which retries every error, doubling the delay every time, with a jitter of 0.5
+     *
+     * @param maxAttempts the maximum number of evaluations, including the first one
+     */
+    public Retry(int maxAttempts, Duration initialDelay, Duration maxDelay)
+    {
+        this(maxAttempts, initialDelay, maxDelay, 2, 0.5, e -> true);
+    }
+
+    /**
+     * @param maxAttempts  the maximum number of evaluations, including the first one
+     * @param initialDelay the delay before the first retry
+     * @param maxDelay     the maximum delay before a retry, before jitter
+     * @param multiplier   the factor by which the delay grows with every retry, at least 1
+     * @param jitter       the maximum fraction by which a delay is randomly reduced, between 0 and 1
+     * @param retryable    whether an error is worth retrying
+     */
+    public Retry(int maxAttempts, Duration initialDelay, Duration maxDelay, double multiplier, double jitter,
+            F<E, Boolean> retryable)
+    {
+        if (maxAttempts < 1 || multiplier < 1 || jitter < 0 || jitter > 1 || initialDelay.isNegative() ||
+                maxDelay.compareTo(initialDelay) < 0)
+        {
+            throw new IllegalArgumentException(format(
+                    "invalid retry policy: maxAttempts {0}, initialDelay {1}, maxDelay {2}, multiplier {3}, jitter {4}",
+                    maxAttempts, initialDelay, maxDelay, multiplier, jitter));
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialDelayNanos = initialDelay.toNanos();
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.multiplier = multiplier;
+        this.jitter = jitter;
+        this.retryable = retryable;
+    }
+
+    /**
+     * The number of evaluations of retried effects, including first attempts
+     */
+    public long attempts()
+    {
+        return attempts.sum();
+    }
+
+    /**
+     * The number of evaluations of retried effects which were retries
+     */
+    public long retries()
+    {
+        return retries.sum();
+    }
+
+    /**
+     * The number of retryable errors which were given up on, because the maximum number of attempts was reached
+     */
+    public long exhausted()
+    {
+        return exhausted.sum();
+    }
+
+    <A> LazyEffect<E, A> apply(LazyEffect<E, A> effect)
+    {
+        return attempt(effect, 1);
+    }
+
+    private <A> LazyEffect<E, A> attempt(LazyEffect<E, A> effect, int attempt)
+    {
+        return LazyEffect.defer(() -> {
+            attempts.increment();
+            return effect;
+        }).recoverWith(e -> {
+            if (!retryable.f(e))
+            {
+                return LazyEffect.error(e);
+            }
+            if (attempt >= maxAttempts)
+            {
+                exhausted.increment();
+                return LazyEffect.error(e);
+            }
+            return LazyEffect.<E>sleep(Duration.ofNanos(delayNanos(attempt))).bind(u -> {
+                retries.increment();
+                return attempt(effect, attempt + 1);
+            });
+        });
+    }
+
+    /**
+     * The jittered delay before the given retry, counting from 1
+     */
+    long delayNanos(int retry)
+    {
+        double delay = Math.min(maxDelayNanos, initialDelayNanos * Math.pow(multiplier, retry - 1));
+        return (long) (delay * (1 - jitter * ThreadLocalRandom.current().nextDouble()));
+    }
+}
@@ -0,0 +1,113 @@
+package com.novarto.lang.effect;
+
+import fj.F0;
+import fj.data.Validation;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A time limit for the evaluation of lazy effects. See {@link LazyEffect#timeout(Timeout, F0)}.
+ *
+ * The limited effect is evaluated on an executor, so that it can be raced against a timer without blocking. When the
+ * time is up, the evaluation is abandoned: it stops at its next step, although a computation which is already in
+ * progress, e.g. a blocking call, cannot be interrupted. The error of a timeout is supplied on the executor, rather
+ * than on the timer thread shared by all timeouts.
+ *
+ * A timeout is meant to be shared by all the effects limited the same way; it counts their evaluations and timeouts.
+ */
+public final class Timeout
+{
+    private final long nanos;
+    private final Executor executor;
+
+    private final LongAdder evaluations = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    /**
+     * A timeout which evaluates the limited effects on {@link LazyEffect#defaultExecutor()}
+     */
+    public Timeout(Duration duration)
+    {
+        this(duration, LazyEffect.defaultExecutor());
+    }
+
+    /**
+     * A timeout which evaluates the limited effects on the given executor
+     */
+    public Timeout(Duration duration, Executor executor)
+    {
+        this.nanos = duration.toNanos();
+        this.executor = executor;
+    }
+
+    /**
+     * The number of evaluations of limited effects
+     */
+    public long evaluations()
+    {
+        return evaluations.sum();
+    }
+
+    /**
+     * The number of evaluations of limited effects which timed out
+     */
+    public long timeouts()
+    {
+        return timeouts.sum();
+    }
+
+    <E, A> LazyEffect<E, A> apply(LazyEffect<E, A> effect, F0<E> onTimeout)
+    {
+        return LazyEffect.async(() -> {
+            evaluations.increment();
+            CompletableFuture<Validation<E, A>> result = effect.runAsync(executor);
+            if (result.isDone())
+            {
+                return result;
+            }
+            ScheduledFuture<?> timer = Delays.schedule(() -> {
+                try
+                {
+                    executor.execute(() -> expire(result, onTimeout));
+                }
+                catch (Throwable t)
+                {
+                    result.completeExceptionally(t);
+                }
+            }, nanos);
+            result.whenComplete((v, t) -> timer.cancel(false));
+            return result;
+        });
+    }
+
+    /**
+     * Complete the result with the error of a timeout, which makes the evaluation stop, unless it has completed
+     * already. If onTimeout throws, the result completes exceptionally instead.
+     */
+    private <E, A> void expire(CompletableFuture<Validation<E, A>> result, F0<E> onTimeout)
+    {
+        if (result.isDone())
+        {
+            return;
+        }
+        //counted before completing, so that whoever observes the timeout also observes the count
+        timeouts.increment();
+        boolean completed;
+        try
+        {
+            completed = result.complete(Validation.fail(onTimeout.f()));
+        }
+        catch (Throwable t)
+        {
+            completed = result.completeExceptionally(t);
+        }
+        if (!completed)
+        {
+            timeouts.decrement();
+        }
+    }
+}
@@ -3,14 +3,17 @@ package com.novarto.lang;
 import fj.Ord;
 import fj.data.Set;
 import fj.data.Stream;
+import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 import static fj.data.List.*;
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
+import static java.util.Collections.emptySet;
 import static java.util.Collections.singletonList;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.sameInstance;
@@ -29,6 +32,54 @@ public class CollectionsTest
 
         assertThat(Collections.duplicates(list(1, 2, 3, 7, 7, 9, 9)), is(Set.arraySet(Ord.hashEqualsOrd(), 7, 9)));
 
+        //these strings all have the same hash code, but are told apart
+        fj.data.List<String> collide = list("AaAa", "BBBB", "AaBB", "BBAa", "AaAa", "BBBB", "AaBB", "BBAa");
+        Set<String> colliding = Collections.duplicates(collide.snoc("x"));
+        assertThat(colliding.size(), is(4));
+        assertThat(collide.forall(colliding::member) && !colliding.member("x"), is(true));
+        assertThat(colliding.toList(), is(collide.take(4)));
+
+        //other elements can be looked up and inserted, but are not ordered among themselves
+        Set<String> inserted = colliding.insert("y");
+        assertThat(inserted.member("y") && inserted.member("AaAa"), is(true));
+        try
+        {
+            inserted.insert("z");
+            Assert.fail();
+        }
+        catch (IllegalArgumentException expected)
+        {
+        }
+    }
+
+    @Test
+    public void duplicateSet()
+    {
+        assertThat(Collections.duplicateSet(nil()), is(emptySet()));
+        assertThat(Collections.duplicateSet(list(1, 2, 3, 7)), is(emptySet()));
+
+        assertThat(Collections.duplicateSet(list(9, 1, 7, 9, 7, 9)), is(Collections.javaSet(7, 9)));
+        assertThat(Collections.duplicateSet(asList(9, 1, 7, 9, 7, 9)), is(Collections.javaSet(7, 9)));
+        assertThat(Collections.duplicateSet(new Integer[]{9, 1, 7, 9, 7, 9}), is(Collections.javaSet(7, 9)));
+        assertThat(Collections.duplicateSet(Stream.stream(9, 1, 7, 9, 7, 9)), is(Collections.javaSet(7, 9)));
+
+        //iterates in order of detection
+        assertThat(new ArrayList<>(Collections.duplicateSet(asList(9, 1, 7, 9, 7, 9))), is(asList(9, 7)));
+    }
+
+    @Test
+    public void duplicatePositions()
+    {
+        assertThat(Collections.duplicatePositions(list(1, 2, 3)).isEmpty(), is(true));
+
+        Map<String, int[]> positions = Collections.duplicatePositions(list("a", "b", "a", "c", "b", "a"));
+        assertThat(positions.size(), is(2));
+        assertThat(positions.get("a"), is(new int[]{0, 2, 5}));
+        assertThat(positions.get("b"), is(new int[]{1, 4}));
+
+        positions = Collections.duplicatePositions(new String[]{"a", "b", "a"});
+        assertThat(positions.size(), is(1));
+        assertThat(positions.get("a"), is(new int[]{0, 2}));
     }
 
     @Test
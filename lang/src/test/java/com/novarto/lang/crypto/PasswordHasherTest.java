@@ -0,0 +1,318 @@
+package com.novarto.lang.crypto;
+
+import fj.P;
+import org.junit.Test;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import javax.xml.bind.DatatypeConverter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class PasswordHasherTest
+{
+    private final PasswordHasher hasher = new PasswordHasher(16, 20, 1000);
+
+    @Test
+    public void roundTrip()
+    {
+        String hash = hasher.toHash("secret");
+        assertThat(hasher.validatePassword("secret", hash), is(true));
+        assertThat(hasher.validatePassword("Secret", hash), is(false));
+    }
+
+    @Test
+    public void sameAsKeyFactory() throws Exception
+    {
+        byte[] salt = new byte[16];
+        new Random(1).nextBytes(salt);
+        String[] passwords = {"", "secret", "p\u00e4ssw\u00f6rd \u20ac", "\ud83d\ude00 emoji", "unpaired \ud83d",
+                "a password which is longer than the 64 byte block size of SHA1, so HMAC hashes it first"};
+        HashAlgorithm[] algorithms = {HashAlgorithm.PBKDF2_SHA1, HashAlgorithm.PBKDF2_SHA256,
+                HashAlgorithm.PBKDF2_SHA512};
+        String[] factories = {"PBKDF2WithHmacSHA1", "PBKDF2WithHmacSHA256", "PBKDF2WithHmacSHA512"};
+        for (int a = 0; a < algorithms.length; a++)
+        {
+            SecretKeyFactory factory = SecretKeyFactory.getInstance(factories[a]);
+            for (String password : passwords)
+            {
+                for (int size : new int[]{1, 20, 24, 100})
+                {
+                    byte[] expected = factory.generateSecret(
+                            new PBEKeySpec(password.toCharArray(), salt, 7, size * 8)).getEncoded();
+                    byte[] actual = new byte[size];
+                    algorithms[a].derive(password, salt, 0, salt.length, 7, actual, 0, size);
+                    assertThat(Arrays.equals(actual, expected), is(true));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void versioned()
+    {
+        PasswordHasher sha256 = new PasswordHasher(HashAlgorithm.PBKDF2_SHA256, 16, 32, 2000, 1000);
+
+        String hash = sha256.toVersionedHash("secret");
+        assertThat(hash.startsWith("$pbkdf2-sha256$v=1$i=2000$"), is(true));
+        assertThat(sha256.validatePassword("secret", hash), is(true));
+        assertThat(sha256.validatePassword("Secret", hash), is(false));
+        assertThat(sha256.needsRehash(hash), is(false));
+
+        //hashes of the former configuration still validate, and need rehashing
+        String legacy = hasher.toHash("secret");
+        String sha1 = hasher.toVersionedHash("secret");
+        assertThat(sha1.startsWith("$pbkdf2-sha1$v=1$i=1000$"), is(true));
+        assertThat(sha256.validatePassword("secret", legacy), is(true));
+        assertThat(sha256.validatePassword("secret", sha1), is(true));
+        assertThat(sha256.needsRehash(legacy), is(true));
+        assertThat(sha256.needsRehash(sha1), is(true));
+        assertThat(hasher.needsRehash(sha1), is(false));
+        assertThat(new PasswordHasher(HashAlgorithm.PBKDF2_SHA256, 16, 32, 4000).needsRehash(hash), is(true));
+        assertThat(new PasswordHasher(HashAlgorithm.PBKDF2_SHA256, 16, 64, 2000).needsRehash(hash), is(true));
+
+        //a custom algorithm
+        HashAlgorithm custom = new HashAlgorithm()
+        {
+            @Override
+            public String id()
+            {
+                return "reversed-sha512";
+            }
+
+            @Override
+            public void derive(CharSequence password, byte[] salt, int saltOffset, int saltLength, int iterations,
+                    byte[] out, int outOffset, int length)
+            {
+                String reversed = new StringBuilder(password).reverse().toString();
+                HashAlgorithm.PBKDF2_SHA512.derive(reversed, salt, saltOffset, saltLength, iterations, out,
+                        outOffset, length);
+            }
+        };
+        PasswordHasher customHasher = new PasswordHasher(custom, 8, 16, 10);
+        String customHash = customHasher.toVersionedHash("secret");
+        assertThat(customHash.startsWith("$reversed-sha512$"), is(true));
+        assertThat(customHasher.validatePassword("secret", customHash), is(true));
+        assertThat(customHasher.validatePassword("secret", hash), is(true));
+        try
+        {
+            sha256.validatePassword("secret", customHash);
+            fail();
+        }
+        catch (IllegalArgumentException expected)
+        {
+            assertThat(expected.getMessage(), is("unknown hash algorithm reversed-sha512"));
+        }
+    }
+
+    @Test
+    public void binaryAndBase64()
+    {
+        byte[] binary = hasher.toBinaryHash("secret");
+        assertThat(binary.length, is(1 + 16 + 20));
+        assertThat(hasher.validatePassword("secret", binary), is(true));
+        assertThat(hasher.validatePassword("Secret", binary), is(false));
+
+        String base64 = hasher.toBase64Hash("secret");
+        assertThat(hasher.validatePasswordBase64("secret", base64), is(true));
+        assertThat(hasher.validatePasswordBase64("secret", base64.replace("=", "")), is(true));
+        assertThat(hasher.validatePasswordBase64("Secret", base64), is(false));
+
+        //the formats hold the same hash
+        byte[] salt = new byte[16];
+        String hex = hasher.toHash("secret", salt);
+        byte[] fromBinary = hasher.toBinaryHash("secret", salt);
+        assertThat(hex, is(DatatypeConverter.printHexBinary(Arrays.copyOfRange(fromBinary, 17, 37)) + ":" +
+                DatatypeConverter.printHexBinary(salt)));
+        assertThat(hasher.validatePassword("secret", hex.toLowerCase()), is(true));
+    }
+
+    @Test
+    public void truncatedHashes()
+    {
+        String versioned = hasher.toVersionedHash("secret");
+        String legacy = hasher.toHash("secret");
+        byte[] binary = hasher.toBinaryHash("secret");
+        byte[] truncated = Arrays.copyOf(binary, 1 + 16 + 1);
+        //a hash of a single byte, in each format
+        String[] hashes = {versioned.substring(0, versioned.lastIndexOf('$') + 1) + "AA",
+                legacy.substring(0, 2) + legacy.substring(legacy.indexOf(':')),
+                Base64.getEncoder().encodeToString(truncated)};
+        for (int i = 0; i < hashes.length; i++)
+        {
+            try
+            {
+                if (i < 2)
+                {
+                    hasher.validatePassword("secret", hashes[i]);
+                }
+                else
+                {
+                    hasher.validatePasswordBase64("secret", hashes[i]);
+                }
+                fail(hashes[i]);
+            }
+            catch (IllegalArgumentException expected)
+            {
+            }
+        }
+        try
+        {
+            hasher.validatePassword("secret", truncated);
+            fail();
+        }
+        catch (IllegalArgumentException expected)
+        {
+        }
+
+        //a hasher producing short hashes accepts them
+        PasswordHasher shortHashes = new PasswordHasher(8, 4, 10);
+        assertThat(shortHashes.validatePassword("secret", shortHashes.toVersionedHash("secret")), is(true));
+    }
+
+    @Test
+    public void malformedHashes()
+    {
+        for (String hash : new String[]{"ABCD", "ABC:DEF0", "XY:00", ":00", "$pbkdf2-sha1$v=1$i=10$AAAA",
+                "$pbkdf2-sha1$v=2$i=10$AAAA$AAAA", "$pbkdf2-sha1$v=1$i=0$AAAA$AAAA", "$pbkdf2-sha1$v=1$i=x$AAAA$AAAA",
+                "$pbkdf2-sha1$v=1$i=99999999999$AAAA$AAAA", "$pbkdf2-sha1$v=1$i=10$AAAA$", "$md5$v=1$i=10$AA$AA"})
+        {
+            try
+            {
+                hasher.validatePassword("secret", hash);
+                fail(hash);
+            }
+            catch (IllegalArgumentException expected)
+            {
+            }
+        }
+        for (byte[] hash : new byte[][]{{}, {5, 1, 2}})
+        {
+            try
+            {
+                hasher.validatePassword("secret", hash);
+                fail();
+            }
+            catch (IllegalArgumentException expected)
+            {
+            }
+        }
+        try
+        {
+            hasher.validatePasswordBase64("secret", "A*==");
+            fail();
+        }
+        catch (IllegalArgumentException expected)
+        {
+        }
+    }
+
+    @Test
+    public void calibrate()
+    {
+        Calibration calibration = PasswordHasher.calibrate(HashAlgorithm.PBKDF2_SHA256, 32, Duration.ofMillis(20));
+        assertThat(calibration.algorithm(), is(HashAlgorithm.PBKDF2_SHA256));
+        assertThat(calibration.hashSize(), is(32));
+        assertThat(calibration.iterations() > 0, is(true));
+        //timing depends on the machine, so only check that the figures agree with each other
+        long nanos = calibration.timePerHash().toNanos();
+        assertThat(nanos > 0, is(true));
+        assertThat(Math.abs(calibration.hashesPerSecondPerCore() * nanos - 1e9) < 1, is(true));
+
+        PasswordHasher calibrated = new PasswordHasher(HashAlgorithm.PBKDF2_SHA256, 16, 32, calibration.iterations());
+        assertThat(calibrated.validatePassword("secret", calibrated.toVersionedHash("secret")), is(true));
+    }
+
+    @Test
+    public void async() throws Exception
+    {
+        String hash = hasher.toHashAsync("secret").get(5, TimeUnit.SECONDS);
+        assertThat(hasher.needsRehash(hash), is(false));
+        assertThat(hasher.validatePasswordAsync("secret", hash).get(5, TimeUnit.SECONDS), is(true));
+        assertThat(hasher.validatePasswordAsync("other", hash).get(5, TimeUnit.SECONDS), is(false));
+    }
+
+    @Test
+    public void bulk() throws Exception
+    {
+        try (HashingPool pool = new HashingPool(3, 10))
+        {
+            List<String> passwords = new ArrayList<>();
+            for (int i = 0; i < 10; i++)
+            {
+                passwords.add("password" + i);
+            }
+            List<String> hashes = hasher.toHashAll(passwords, pool).get(5, TimeUnit.SECONDS);
+            assertThat(hashes.size(), is(10));
+            assertThat(hashes.stream().noneMatch(hasher::needsRehash), is(true));
+            assertThat(pool.submitted(), is(3L));
+
+            List<Boolean> valid = hasher.validatePasswordAll(Arrays.asList(P.p("password0", hashes.get(0)),
+                    P.p("password1", hashes.get(0)), P.p("password9", hashes.get(9))), pool).get(5, TimeUnit.SECONDS);
+            assertThat(valid, is(Arrays.asList(true, false, true)));
+
+            assertThat(hasher.toHashAll(new ArrayList<>(), pool).get().isEmpty(), is(true));
+        }
+    }
+
+    @Test
+    public void rejectsWhenQueueIsFull() throws Exception
+    {
+        try (HashingPool pool = new HashingPool(1, 1))
+        {
+            CountDownLatch release = new CountDownLatch(1);
+            CountDownLatch running = new CountDownLatch(1);
+            CompletableFuture<Boolean> blocker = pool.submit(() -> {
+                running.countDown();
+                return await(release);
+            });
+            assertThat(running.await(5, TimeUnit.SECONDS), is(true));
+
+            CompletableFuture<String> queued = hasher.toHashAsync("queued", pool);
+            assertThat(pool.queueDepth(), is(1));
+            CompletableFuture<String> rejected = hasher.toHashAsync("rejected", pool);
+            try
+            {
+                rejected.get();
+                fail();
+            }
+            catch (ExecutionException e)
+            {
+                assertThat(e.getCause(), instanceOf(RejectedExecutionException.class));
+            }
+            assertThat(pool.rejected(), is(1L));
+
+            release.countDown();
+            assertThat(blocker.get(5, TimeUnit.SECONDS), is(true));
+            assertThat(hasher.validatePassword("queued", queued.get(5, TimeUnit.SECONDS)), is(true));
+            assertThat(pool.submitted(), is(2L));
+        }
+    }
+
+    private static boolean await(CountDownLatch latch)
+    {
+        try
+        {
+            return latch.await(5, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.novarto.lang.denum;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static fj.data.List.list;
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class DynamicEnumMapTest
+{
+    @Test
+    public void testIt()
+    {
+        DynamicEnumMap<Fruit, String> m = new DynamicEnumMap<>(Fruit.F);
+        assertThat(m.isEmpty(), is(true));
+
+        assertThat(m.put(Fruit.PEAR, "pear"), is(nullValue()));
+        assertThat(m.put(Fruit.APPLE, null), is(nullValue()));
+        assertThat(m.put(Fruit.PEAR, "green pear"), is("pear"));
+
+        assertThat(m.size(), is(2));
+        assertThat(m.get(Fruit.PEAR), is("green pear"));
+        assertThat(m.get(Fruit.APPLE), is(nullValue()));
+        assertThat(m.containsKey(Fruit.APPLE), is(true));
+        assertThat(m.containsKey(Fruit.PLUM), is(false));
+        assertThat(m.containsKey("apple"), is(false));
+        assertThat(m.containsValue(null), is(true));
+        assertThat(m.containsValue("green pear"), is(true));
+
+        Map<Fruit, String> expected = new HashMap<>();
+        expected.put(Fruit.PEAR, "green pear");
+        expected.put(Fruit.APPLE, null);
+        assertThat(m, is(expected));
+        assertThat(expected, is(m));
+        assertThat(m.hashCode(), is(expected.hashCode()));
+
+        assertThat(m.keys(), is(DynamicEnumSet.of(Fruit.F, Fruit.APPLE, Fruit.PEAR)));
+
+        assertThat(m.remove(Fruit.APPLE), is(nullValue()));
+        assertThat(m.containsKey(Fruit.APPLE), is(false));
+        assertThat(m.size(), is(1));
+    }
+
+    @Test
+    public void iteration()
+    {
+        DynamicEnumMap<Fruit, Integer> m = new DynamicEnumMap<>(Fruit.F);
+        m.put(Fruit.PLUM, 3);
+        m.put(Fruit.APPLE, 1);
+
+        List<Fruit> keys = new ArrayList<>();
+        m.forEach((k, v) -> keys.add(k));
+        assertThat(keys, is(asList(Fruit.APPLE, Fruit.PLUM)));
+
+        for (Map.Entry<Fruit, Integer> e : m.entrySet())
+        {
+            e.setValue(e.getValue() * 10);
+        }
+        assertThat(m.get(Fruit.APPLE), is(10));
+        assertThat(m.get(Fruit.PLUM), is(30));
+
+        m.entrySet().removeIf(e -> e.getKey() == Fruit.APPLE);
+        assertThat(new ArrayList<>(m.keySet()), is(asList(Fruit.PLUM)));
+
+        DynamicEnumMap<Fruit, Integer> copy = new DynamicEnumMap<>(m);
+        m.clear();
+        assertThat(m.isEmpty(), is(true));
+        assertThat(copy.size(), is(1));
+    }
+
+    public static final class Fruit extends DynamicEnum<Fruit>
+    {
+        static final DynamicEnumFactory<Fruit> F = new DynamicEnumFactory<>(Fruit.class,
+                () -> list(new Fruit(10, "apple"), new Fruit(20, "pear"), new Fruit(30, "plum")));
+
+        static final Fruit APPLE = F.byId(10);
+        static final Fruit PEAR = F.byId(20);
+        static final Fruit PLUM = F.byId(30);
+
+        private Fruit(int id, String name)
+        {
+            super(id, name);
+        }
+    }
+}
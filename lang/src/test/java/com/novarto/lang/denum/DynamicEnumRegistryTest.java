@@ -0,0 +1,75 @@
+package com.novarto.lang.denum;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static fj.data.List.list;
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class DynamicEnumRegistryTest
+{
+    private static final ClassLoader LOADER = DynamicEnumRegistryTest.class.getClassLoader();
+
+    @Test
+    public void initializeAll()
+    {
+        assertThat(DynamicEnumRegistry.declaredClassNames(LOADER).contains(Planet.class.getName()), is(true));
+
+        Map<Class<?>, Duration> timings = DynamicEnumRegistry.initializeAll(LOADER);
+
+        assertThat(timings.containsKey(Planet.class), is(true));
+        assertThat(timings.containsKey(Moon.class), is(true));
+        assertThat(DynamicEnumFactory.isRegistered(Planet.class), is(true));
+        assertThat(DynamicEnumFactory.isRegistered(Moon.class), is(true));
+    }
+
+    @Test
+    public void failures()
+    {
+        try
+        {
+            DynamicEnumRegistry.initialize(asList(NoFactory.class.getName(), "com.novarto.Missing"), LOADER,
+                    Runnable::run);
+        }
+        catch (IllegalStateException e)
+        {
+            assertThat(e.getSuppressed().length, is(1));
+            return;
+        }
+        throw new AssertionError();
+    }
+
+    public static final class Planet extends DynamicEnum<Planet>
+    {
+        private static final DynamicEnumFactory<Planet> F = new DynamicEnumFactory<>(Planet.class,
+                () -> list(new Planet(3, "Earth"), new Planet(4, "Mars")));
+
+        private Planet(int id, String name)
+        {
+            super(id, name);
+        }
+    }
+
+    public static final class Moon extends DynamicEnum<Moon>
+    {
+        private static final DynamicEnumFactory<Moon> F = new DynamicEnumFactory<>(Moon.class,
+                () -> list(new Moon(1, "Luna")));
+
+        private Moon(int id, String name)
+        {
+            super(id, name);
+        }
+    }
+
+    public static final class NoFactory extends DynamicEnum<NoFactory>
+    {
+        private NoFactory(int id, String name)
+        {
+            super(id, name);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.novarto.lang.denum;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+
+import static fj.data.List.range;
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class DynamicEnumSetTest
+{
+    @Test
+    public void addRemoveContains()
+    {
+        DynamicEnumSet<Num> xs = DynamicEnumSet.noneOf(Num.F);
+        assertThat(xs.isEmpty(), is(true));
+
+        assertThat(xs.add(Num.of(3)), is(true));
+        assertThat(xs.add(Num.of(3)), is(false));
+        assertThat(xs.add(Num.of(100)), is(true));
+
+        assertThat(xs.size(), is(2));
+        assertThat(xs.contains(Num.of(3)), is(true));
+        assertThat(xs.contains(Num.of(4)), is(false));
+        assertThat(xs.contains("3"), is(false));
+        assertThat(xs.contains(null), is(false));
+
+        assertThat(xs.remove(Num.of(3)), is(true));
+        assertThat(xs.remove(Num.of(3)), is(false));
+        assertThat(xs.size(), is(1));
+    }
+
+    @Test
+    public void allOfAndComplement()
+    {
+        DynamicEnumSet<Num> all = DynamicEnumSet.allOf(Num.F);
+        assertThat(all.size(), is(Num.SIZE));
+        assertThat(new ArrayList<>(all), is(asList(Num.F.values())));
+
+        DynamicEnumSet<Num> xs = DynamicEnumSet.of(Num.F, Num.of(0), Num.of(129));
+        DynamicEnumSet<Num> complement = xs.complement();
+        assertThat(complement.size(), is(Num.SIZE - 2));
+        assertThat(complement.contains(Num.of(0)), is(false));
+        assertThat(complement.contains(Num.of(1)), is(true));
+    }
+
+    @Test
+    public void setAlgebra()
+    {
+        DynamicEnumSet<Num> evens = DynamicEnumSet.copyOf(Num.F, range(0, Num.SIZE / 2).map(i -> Num.of(i * 2)));
+        DynamicEnumSet<Num> small = DynamicEnumSet.copyOf(Num.F, range(0, 70).map(Num::of));
+
+        assertThat(evens.union(small).size(), is(Num.SIZE / 2 + 35));
+        assertThat(evens.intersection(small).size(), is(35));
+        assertThat(evens.difference(small).size(), is(Num.SIZE / 2 - 35));
+
+        assertThat(evens.containsAll(evens.intersection(small)), is(true));
+        assertThat(evens.containsAll(small), is(false));
+
+        //agrees with a j.u.HashSet
+        HashSet<Num> expected = new HashSet<>(evens);
+        expected.retainAll(small);
+        assertThat(evens.intersection(small), is(expected));
+        assertThat(expected, is(evens.intersection(small)));
+        assertThat(evens.intersection(small).hashCode(), is(expected.hashCode()));
+    }
+
+    @Test
+    public void iteration()
+    {
+        DynamicEnumSet<Num> xs = DynamicEnumSet.of(Num.F, Num.of(130), Num.of(5), Num.of(64), Num.of(63));
+
+        List<Num> iterated = new ArrayList<>();
+        xs.forEach(iterated::add);
+        assertThat(iterated, is(asList(Num.of(5), Num.of(63), Num.of(64), Num.of(130))));
+        assertThat(new ArrayList<>(xs), is(iterated));
+
+        Iterator<Num> it = xs.iterator();
+        while (it.hasNext())
+        {
+            if (it.next().id % 2 == 0)
+            {
+                it.remove();
+            }
+        }
+        assertThat(new ArrayList<>(xs), is(asList(Num.of(5), Num.of(63))));
+    }
+
+    public static final class Num extends DynamicEnum<Num>
+    {
+        static final int SIZE = 150;
+
+        static final DynamicEnumFactory<Num> F = new DynamicEnumFactory<>(Num.class,
+                () -> range(0, SIZE).map(i -> new Num(i, "n" + i)));
+
+        private Num(int id, String name)
+        {
+            super(id, name);
+        }
+
+        static Num of(int id)
+        {
+            return F.byId(id);
+        }
+    }
+}
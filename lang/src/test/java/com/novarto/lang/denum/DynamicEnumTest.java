@@ -3,6 +3,9 @@ package com.novarto.lang.denum;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+
 import static fj.data.List.list;
 import static org.junit.Assert.assertNotNull;
 
@@ -18,6 +21,117 @@ public class DynamicEnumTest
         Assert.assertEquals("Red", Color.RED.name);
     }
 
+    @Test
+    public void byId()
+    {
+        Assert.assertSame(Color.GREEN, Color.F.byId(1));
+        Assert.assertSame(Color.RED, Color.F.byId(2));
+        Assert.assertArrayEquals(new Color[]{Color.GREEN, Color.RED}, Color.values());
+
+        for (int i = 0; i < Sparse.IDS.length; i++)
+        {
+            Sparse x = Sparse.F.byId(Sparse.IDS[i]);
+            Assert.assertEquals(Sparse.IDS[i], x.id);
+            Assert.assertEquals("s" + i, x.name);
+        }
+    }
+
+    @Test
+    public void byIdMissing()
+    {
+        for (int id : new int[]{0, 3, -1, Integer.MIN_VALUE, Integer.MAX_VALUE})
+        {
+            assertThrows(() -> Color.F.byId(id));
+        }
+        for (int id : new int[]{0, 1, -1, 1000, Integer.MIN_VALUE + 1})
+        {
+            assertThrows(() -> Sparse.F.byId(id));
+        }
+    }
+
+    @Test
+    public void byName()
+    {
+        Assert.assertSame(Color.GREEN, Color.F.byName("Green"));
+        Assert.assertSame(Color.GREEN, Color.F.byName(new StringBuilder("Green")));
+        Assert.assertSame(Color.RED, Color.F.byName("xRedx".toCharArray(), 1, 3));
+
+        for (Intl x : Intl.F.values())
+        {
+            Assert.assertSame(x, Intl.F.byName(new StringBuilder(x.name)));
+            Assert.assertSame(x, Intl.F.byName(x.name.toCharArray(), 0, x.name.length()));
+
+            byte[] utf8 = ("__" + x.name + "__").getBytes(StandardCharsets.UTF_8);
+            Assert.assertSame(x, Intl.F.byName(utf8, 2, utf8.length - 4));
+        }
+    }
+
+    @Test
+    public void byNameMissing()
+    {
+        assertThrows(() -> Color.F.byName("green"));
+        assertThrows(() -> Color.F.byName(new StringBuilder("Gree")));
+        assertThrows(() -> Color.F.byName("Green".toCharArray(), 0, 4));
+        assertThrows(() -> Color.F.byName("Greenish".getBytes(StandardCharsets.UTF_8), 0, 6));
+        //malformed UTF-8
+        assertThrows(() -> Intl.F.byName(new byte[]{(byte) 0xC3}, 0, 1));
+        assertThrows(() -> Intl.F.byName(new byte[]{(byte) 0xF0, (byte) 0x9F, (byte) 0x8D}, 0, 3));
+    }
+
+    @Test
+    public void reload()
+    {
+        Reloadable one = Reloadable.F.byId(1);
+        Reloadable two = Reloadable.F.byId(2);
+        DynamicEnumSet<Reloadable> set = DynamicEnumSet.of(Reloadable.F, one, two);
+
+        //add a value, remove a value
+        Reloadable.SOURCE.set(list(new Reloadable(3, "three"), new Reloadable(1, "one")));
+        Reloadable.F.reload();
+
+        Assert.assertSame(one, Reloadable.F.byId(1));
+        Assert.assertSame(one, Reloadable.F.byName("one"));
+        Reloadable three = Reloadable.F.byName("three");
+        Assert.assertEquals(3, three.id);
+        Assert.assertEquals(2, three.ordinal());
+        Assert.assertArrayEquals(new Reloadable[]{one, three}, Reloadable.F.values());
+        assertThrows(() -> Reloadable.F.byId(2));
+        assertThrows(() -> Reloadable.F.byName("two"));
+
+        //removed instances remain valid set elements
+        Assert.assertEquals(2, set.size());
+        Assert.assertTrue(set.contains(two));
+        set.add(three);
+        Assert.assertEquals(3, set.size());
+        Assert.assertEquals(DynamicEnumSet.of(Reloadable.F, one, three), DynamicEnumSet.allOf(Reloadable.F));
+
+        //a conflicting reload keeps the current values
+        Reloadable.SOURCE.set(list(new Reloadable(1, "uno")));
+        try
+        {
+            Reloadable.F.reload();
+            Assert.fail();
+        }
+        catch (IllegalStateException e)
+        {
+            //expected
+        }
+        Assert.assertSame(one, Reloadable.F.byName("one"));
+        Assert.assertArrayEquals(new Reloadable[]{one, three}, Reloadable.F.values());
+
+        //a removed value is revived, rather than replaced
+        Reloadable.SOURCE.set(list(new Reloadable(1, "one"), new Reloadable(2, "two")));
+        Reloadable.F.reload();
+        Assert.assertSame(two, Reloadable.F.byId(2));
+        Assert.assertArrayEquals(new Reloadable[]{one, two}, Reloadable.F.values());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void notReloadable()
+    {
+        Color.F.reload();
+    }
+
     @Test(expected = IllegalStateException.class)
     public void duplicates()
     {
@@ -52,6 +166,20 @@ public class DynamicEnumTest
     }
 
 
+    private static void assertThrows(Runnable r)
+    {
+        try
+        {
+            r.run();
+        }
+        catch (IllegalArgumentException e)
+        {
+            return;
+        }
+        Assert.fail("expected IllegalArgumentException");
+    }
+
+
     public static final class Color extends DynamicEnum<Color>
     {
         private Color(int id, String name)
@@ -72,6 +200,46 @@ public class DynamicEnumTest
 
     }
 
+    public static final class Sparse extends DynamicEnum<Sparse>
+    {
+        private static final int[] IDS = {Integer.MIN_VALUE, -1000000, -7, 42, 65536, 1 << 20, 1 << 24, Integer.MAX_VALUE};
+
+        private static final DynamicEnumFactory<Sparse> F = new DynamicEnumFactory<>(Sparse.class,
+                () -> fj.data.List.range(0, IDS.length).map(i -> new Sparse(IDS[i], "s" + i)));
+
+        private Sparse(int id, String name)
+        {
+            super(id, name);
+        }
+    }
+
+    public static final class Intl extends DynamicEnum<Intl>
+    {
+        private static final DynamicEnumFactory<Intl> F = new DynamicEnumFactory<>(Intl.class,
+                () -> list(new Intl(1, "plain"), new Intl(2, "caf\u00E9"),
+                        new Intl(3, "\u044F\u0431\u044A\u043B\u043A\u0430"), new Intl(4, "\uD83C\uDF4F"),
+                        new Intl(5, "")));
+
+        private Intl(int id, String name)
+        {
+            super(id, name);
+        }
+    }
+
+    public static final class Reloadable extends DynamicEnum<Reloadable>
+    {
+        private static final AtomicReference<fj.data.List<Reloadable>> SOURCE = new AtomicReference<>(
+                list(new Reloadable(1, "one"), new Reloadable(2, "two")));
+
+        private static final DynamicEnumFactory<Reloadable> F = new DynamicEnumFactory<>(Reloadable.class,
+                SOURCE::get, true);
+
+        private Reloadable(int id, String name)
+        {
+            super(id, name);
+        }
+    }
+
     public static final class Whatever extends DynamicEnum<Whatever>
     {
         public Whatever(int id, String name)
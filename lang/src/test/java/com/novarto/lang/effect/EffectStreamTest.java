@@ -0,0 +1,96 @@
+package com.novarto.lang.effect;
+
+import fj.P;
+import fj.P2;
+import fj.data.Option;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.novarto.lang.effect.LazyEffect.error;
+import static com.novarto.lang.effect.LazyEffect.pure;
+import static fj.data.Validation.fail;
+import static fj.data.Validation.success;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class EffectStreamTest
+{
+    private final AtomicInteger pages = new AtomicInteger();
+
+    /**
+     * Pages of 10 numbers from 0 until the limit, counting the pages read
+     */
+    private EffectStream<String, Integer> paged(int limit)
+    {
+        return EffectStream.unfoldChunks(0, offset -> readPage(offset, limit));
+    }
+
+    private LazyEffect<String, Option<P2<List<Integer>, Integer>>> readPage(int offset, int limit)
+    {
+        return pure(() -> {
+            pages.incrementAndGet();
+            if (offset >= limit)
+            {
+                return Option.none();
+            }
+            List<Integer> page = IntStream.range(offset, Math.min(limit, offset + 10)).boxed()
+                    .collect(Collectors.toList());
+            return Option.some(P.p(page, offset + page.size()));
+        });
+    }
+
+    @Test
+    public void transformations()
+    {
+        EffectStream<String, Integer> xs = paged(25);
+        assertThat(xs.runCollect().run(), is(success(range(0, 25))));
+        assertThat(xs.map(x -> x * 2).filter(x -> x % 3 == 0).runCollect().run(),
+                is(success(Arrays.asList(0, 6, 12, 18, 24, 30, 36, 42, 48))));
+        assertThat(EffectStream.<String, Integer>of(1, 2, 3).bind(x -> EffectStream.of(x, x * 10)).runCollect().run(),
+                is(success(Arrays.asList(1, 10, 2, 20, 3, 30))));
+        assertThat(xs.mapEval(x -> pure(x + 1)).runFold(0, Integer::sum).run(), is(success(325)));
+        assertThat(EffectStream.<String, Integer>empty().append(EffectStream.of(1)).runCollect().run(),
+                is(success(Arrays.asList(1))));
+    }
+
+    @Test
+    public void chunk()
+    {
+        List<List<Integer>> groups = paged(25).chunk(7).runCollect().run().success();
+        assertThat(groups.size(), is(4));
+        assertThat(groups.get(0), is(range(0, 7)));
+        assertThat(groups.get(3), is(range(21, 25)));
+        assertThat(EffectStream.fromIterable(range(0, 6), 4).chunk(3).runCollect().run(),
+                is(success(Arrays.asList(range(0, 3), range(3, 6)))));
+    }
+
+    @Test
+    public void longStreamsAreStackSafeAndRerunnable() throws Exception
+    {
+        EffectStream<String, Integer> xs = EffectStream.fromIterable(range(0, 300000), 1);
+        assertThat(xs.runFold(0L, (acc, x) -> acc + x).run(), is(success(44999850000L)));
+        assertThat(xs.filter(x -> x % 2 == 0).bind(x -> EffectStream.<String, Integer>of(x)).runFold(0, (n, x) -> n + 1)
+                .runAsync().get(10, TimeUnit.SECONDS), is(success(150000)));
+    }
+
+    @Test
+    public void firstErrorStopsTheStream()
+    {
+        EffectStream<String, Integer> xs = paged(1000)
+                .mapEval(x -> x == 42 ? error("bad " + x) : pure(x));
+
+        assertThat(xs.runFold(0, Integer::sum).run(), is(fail("bad 42")));
+        assertThat(pages.get(), is(5));
+    }
+
+    private static List<Integer> range(int from, int to)
+    {
+        return IntStream.range(from, to).boxed().collect(Collectors.toList());
+    }
+}
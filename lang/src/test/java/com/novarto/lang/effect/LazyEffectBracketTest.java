@@ -0,0 +1,187 @@
+package com.novarto.lang.effect;
+
+import fj.Unit;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.novarto.lang.effect.LazyEffect.bracket;
+import static com.novarto.lang.effect.LazyEffect.error;
+import static com.novarto.lang.effect.LazyEffect.pure;
+import static fj.data.Validation.fail;
+import static fj.data.Validation.success;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class LazyEffectBracketTest
+{
+    private final List<String> log = Collections.synchronizedList(new ArrayList<>());
+
+    private Resource<String, String> resource(String name)
+    {
+        return Resource.make(LazyEffect.<String, String>pure(() -> {
+            log.add("acquire " + name);
+            return name;
+        }), r -> pure(() -> {
+            log.add("release " + r);
+            return Unit.unit();
+        }));
+    }
+
+    @Test
+    public void releasedAfterSuccessAndFailure()
+    {
+        assertThat(resource("a").use(r -> pure(r.length())).run(), is(success(1)));
+        assertThat(log, is(Arrays.asList("acquire a", "release a")));
+
+        log.clear();
+        assertThat(resource("a").use(r -> LazyEffect.<String, Integer>error("boom")).run(), is(fail("boom")));
+        assertThat(log, is(Arrays.asList("acquire a", "release a")));
+
+        log.clear();
+        LazyEffect<String, Integer> later = resource("a").use(r -> pure(1)).bind(x -> error("later"));
+        assertThat(later.run(), is(fail("later")));
+        assertThat(log, is(Arrays.asList("acquire a", "release a")));
+    }
+
+    @Test
+    public void releasedWhenUseThrows()
+    {
+        LazyEffect<String, Integer> throwing = resource("a").use(r -> pure(() -> {
+            throw new IllegalStateException("thrown");
+        }));
+        try
+        {
+            throwing.run();
+            Assert.fail();
+        }
+        catch (IllegalStateException e)
+        {
+            assertThat(e.getMessage(), is("thrown"));
+        }
+        assertThat(log, is(Arrays.asList("acquire a", "release a")));
+    }
+
+    @Test
+    public void notReleasedIfNotAcquired()
+    {
+        LazyEffect<String, Integer> effect = bracket(error("cannot acquire"), r -> pure(1), r -> pure(() -> {
+            log.add("release");
+            return Unit.unit();
+        }));
+        assertThat(effect.run(), is(fail("cannot acquire")));
+        assertThat(log.isEmpty(), is(true));
+    }
+
+    @Test
+    public void releaseError()
+    {
+        LazyEffect<String, Integer> ok = bracket(pure("a"), r -> pure(1), r -> error("cannot release"));
+        assertThat(ok.run(), is(fail("cannot release")));
+
+        LazyEffect<String, Integer> failed = bracket(pure("a"), r -> error("boom"), r -> error("cannot release"));
+        assertThat(failed.run(), is(fail("boom")));
+    }
+
+    @Test
+    public void composedResourcesReleasedInReverseOrder() throws Exception
+    {
+        Resource<String, String> both = resource("a").bind(a -> resource("b").map(b -> a + b));
+
+        assertThat(both.use(ab -> pure(ab)).run(), is(success("ab")));
+        assertThat(log, is(Arrays.asList("acquire a", "acquire b", "release b", "release a")));
+
+        log.clear();
+        assertThat(both.use(ab -> pure(ab)).runAsync().get(5, TimeUnit.SECONDS), is(success("ab")));
+        assertThat(log, is(Arrays.asList("acquire a", "acquire b", "release b", "release a")));
+
+        log.clear();
+        Resource<String, String> second = Resource.make(error("cannot acquire b"), r -> pure(Unit.unit()));
+        assertThat(resource("a").bind(a -> second).use(b -> pure(b)).run(), is(fail("cannot acquire b")));
+        assertThat(log, is(Arrays.asList("acquire a", "release a")));
+    }
+
+    @Test
+    public void releasedOnTimeoutOnceStepCompletes() throws Exception
+    {
+        CompletableFuture<fj.data.Validation<String, Integer>> step = new CompletableFuture<>();
+        CountDownLatch released = new CountDownLatch(1);
+        LazyEffect<String, Integer> slow = bracket(pure("a"), r -> LazyEffect.async(() -> step), r -> pure(() -> {
+            log.add("release " + r);
+            released.countDown();
+            return Unit.unit();
+        })).timeout(new Timeout(Duration.ofMillis(20)), () -> "timed out");
+
+        assertThat(slow.runAsync().get(5, TimeUnit.SECONDS), is(fail("timed out")));
+        //the step may still be using the resource, so it is neither cancelled nor is the resource released yet
+        assertThat(released.await(50, TimeUnit.MILLISECONDS), is(false));
+        assertThat(step.isCancelled(), is(false));
+
+        step.complete(success(1));
+        assertThat(released.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(log, is(Arrays.asList("release a")));
+    }
+
+    @Test
+    public void releasedOnCancellationOnceStepCompletes() throws Exception
+    {
+        CompletableFuture<fj.data.Validation<String, Integer>> step = new CompletableFuture<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch released = new CountDownLatch(1);
+        LazyEffect<String, Integer> effect = bracket(pure("a"), r -> LazyEffect.async(() -> {
+            started.countDown();
+            return step;
+        }), r -> pure(() -> {
+            log.add("release " + r);
+            released.countDown();
+            return Unit.unit();
+        }));
+
+        CompletableFuture<fj.data.Validation<String, Integer>> result = effect.runAsync();
+        assertThat(started.await(5, TimeUnit.SECONDS), is(true));
+        result.cancel(false);
+        assertThat(released.await(50, TimeUnit.MILLISECONDS), is(false));
+
+        step.completeExceptionally(new IllegalStateException("closed"));
+        assertThat(released.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(step.isCancelled(), is(false));
+        assertThat(log, is(Arrays.asList("release a")));
+    }
+
+    @Test
+    public void asynchronousReleaseCompletesOnTimeout() throws Exception
+    {
+        CountDownLatch closed = new CountDownLatch(1);
+        LazyEffect<String, Integer> effect = bracket(pure("a"), r -> pure(1), r -> LazyEffect.<String>sleep(
+                Duration.ofMillis(200)).map(u -> {
+            log.add("release " + r);
+            closed.countDown();
+            return Unit.unit();
+        })).timeout(new Timeout(Duration.ofMillis(50)), () -> "timed out");
+
+        //the timeout strikes while the release sleeps, which must not cut the release short
+        assertThat(effect.runAsync().get(5, TimeUnit.SECONDS), is(fail("timed out")));
+        assertThat(closed.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(log, is(Arrays.asList("release a")));
+    }
+
+    @Test
+    public void stepCancelledOnTimeoutWithoutResources() throws Exception
+    {
+        CompletableFuture<fj.data.Validation<String, Integer>> step = new CompletableFuture<>();
+        LazyEffect<String, Integer> slow = LazyEffect.<String, Integer>async(() -> step)
+                .timeout(new Timeout(Duration.ofMillis(20)), () -> "timed out");
+
+        assertThat(slow.runAsync().get(5, TimeUnit.SECONDS), is(fail("timed out")));
+        step.exceptionally(t -> null).get(5, TimeUnit.SECONDS);
+        assertThat(step.isCancelled(), is(true));
+    }
+}
@@ -0,0 +1,124 @@
+package com.novarto.lang.effect;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.novarto.lang.effect.LazyEffect.error;
+import static com.novarto.lang.effect.LazyEffect.pure;
+import static fj.data.Validation.fail;
+import static fj.data.Validation.success;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class LazyEffectMemoTest
+{
+    private final AtomicInteger evaluations = new AtomicInteger();
+    private final AtomicLong clock = new AtomicLong();
+
+    private final LazyEffect<String, Integer> counter = pure(evaluations::incrementAndGet);
+
+    @Test
+    public void successIsCached()
+    {
+        LazyEffect<String, Integer> memoized = counter.memoizeSuccess();
+        assertThat(memoized.run(), is(success(1)));
+        assertThat(memoized.run(), is(success(1)));
+        assertThat(memoized.map(x -> x + 1).run(), is(success(2)));
+        assertThat(evaluations.get(), is(1));
+    }
+
+    @Test
+    public void failureIsNotCached()
+    {
+        LazyEffect<String, Integer> flaky = counter.bind(x -> x < 3 ? error("failed " + x) : pure(x));
+        LazyEffect<String, Integer> memoized = flaky.memoizeSuccess();
+
+        assertThat(memoized.run(), is(fail("failed 1")));
+        assertThat(memoized.run(), is(fail("failed 2")));
+        assertThat(memoized.run(), is(success(3)));
+        assertThat(memoized.run(), is(success(3)));
+    }
+
+    @Test
+    public void ttl()
+    {
+        LazyEffect<String, Integer> memoized = counter.memoize(100, 0, null, clock::get);
+
+        assertThat(memoized.run(), is(success(1)));
+        clock.set(99);
+        assertThat(memoized.run(), is(success(1)));
+        clock.set(100);
+        assertThat(memoized.run(), is(success(2)));
+        clock.set(150);
+        assertThat(memoized.run(), is(success(2)));
+    }
+
+    @Test
+    public void refreshAhead()
+    {
+        List<Runnable> refreshes = new ArrayList<>();
+        LazyEffect<String, Integer> memoized = counter.memoize(100, 30, refreshes::add, clock::get);
+
+        assertThat(memoized.run(), is(success(1)));
+        clock.set(69);
+        assertThat(memoized.run(), is(success(1)));
+        assertThat(refreshes.size(), is(0));
+
+        //within the refresh window: the cached value is returned, and a single refresh is started
+        clock.set(70);
+        assertThat(memoized.run(), is(success(1)));
+        assertThat(memoized.run(), is(success(1)));
+        assertThat(refreshes.size(), is(1));
+
+        refreshes.get(0).run();
+        assertThat(memoized.run(), is(success(2)));
+        clock.set(169);
+        assertThat(memoized.run(), is(success(2)));
+        assertThat(evaluations.get(), is(2));
+    }
+
+    @Test
+    public void concurrentCallersShareOneEvaluation() throws Exception
+    {
+        CountDownLatch release = new CountDownLatch(1);
+        LazyEffect<String, Integer> slow = pure(() -> {
+            try
+            {
+                release.await();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            return evaluations.incrementAndGet();
+        });
+        LazyEffect<String, Integer> memoized = slow.memoizeSuccess(Duration.ofMinutes(1));
+
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        try
+        {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < 16; i++)
+            {
+                results.add(pool.submit(memoized::run));
+            }
+            Thread.sleep(50);
+            release.countDown();
+            for (Future<?> result : results)
+            {
+                assertThat(result.get(), is(success(1)));
+            }
+            assertThat(evaluations.get(), is(1));
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+    }
+}
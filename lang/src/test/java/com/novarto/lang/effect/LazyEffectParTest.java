@@ -0,0 +1,140 @@
+package com.novarto.lang.effect;
+
+import fj.P;
+import fj.Semigroup;
+import fj.data.Validation;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.novarto.lang.effect.LazyEffect.*;
+import static fj.data.Validation.fail;
+import static fj.data.Validation.success;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class LazyEffectParTest
+{
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(8);
+    private static final Semigroup<String> CONCAT = Semigroup.stringSemigroup;
+
+    @AfterClass
+    public static void shutdown()
+    {
+        POOL.shutdownNow();
+    }
+
+    @Test
+    public void zipRunsConcurrently()
+    {
+        LazyEffect<String, Integer> slow = pure(() -> {
+            sleep(300);
+            return 1;
+        });
+
+        long start = System.nanoTime();
+        assertThat(zip(slow, slow.map(x -> x + 1), CONCAT, POOL).run(), is(success(P.p(1, 2))));
+        assertThat((System.nanoTime() - start) / 1000000 < 550, is(true));
+    }
+
+    @Test
+    public void errorsAreAccumulatedInOrder()
+    {
+        LazyEffect<String, Integer> ok = pure(1);
+        LazyEffect<String, Integer> a = error("a");
+        LazyEffect<String, Integer> c = error(() -> {
+            sleep(50);
+            return "c";
+        });
+
+        assertThat(par3(a, ok, c, (x, y, z) -> x + y + z, CONCAT, POOL).run(), is(fail("ac")));
+        assertThat(par5(ok, ok, ok, ok, ok, (x1, x2, x3, x4, x5) -> x1 + x2 + x3 + x4 + x5, CONCAT, POOL).run(),
+                is(success(5)));
+        assertThat(par4(ok, a, ok, a, (x1, x2, x3, x4) -> 0, CONCAT, POOL).run(), is(fail("aa")));
+    }
+
+    @Test
+    public void parTraverseIsBoundedAndOrdered() throws Exception
+    {
+        AtomicInteger inProgress = new AtomicInteger();
+        AtomicInteger maxSeen = new AtomicInteger();
+        List<Integer> xs = IntStream.range(0, 200).boxed().collect(Collectors.toList());
+
+        LazyEffect<String, List<Integer>> program = parTraverse(xs, x -> LazyEffect.<String, Integer>pure(() -> {
+            maxSeen.accumulateAndGet(inProgress.incrementAndGet(), Math::max);
+            sleep(1);
+            inProgress.decrementAndGet();
+            return x * 2;
+        }), 4, CONCAT, POOL);
+
+        Validation<String, List<Integer>> result = program.runAsync(POOL).get();
+        assertThat(result.success(), is(xs.stream().map(x -> x * 2).collect(Collectors.toList())));
+        assertThat(maxSeen.get() <= 4, is(true));
+
+        LazyEffect<String, List<Integer>> failing = parTraverse(xs,
+                x -> x % 50 == 0 ? LazyEffect.<String, Integer>error(x + ";") : pure(x), 3, CONCAT, POOL);
+        assertThat(failing.run(), is(fail("0;50;100;150;")));
+    }
+
+    @Test
+    public void timedOutParTraverseStopsStartingElements() throws Exception
+    {
+        AtomicInteger started = new AtomicInteger();
+        List<CompletableFuture<Validation<String, Integer>>> steps = new CopyOnWriteArrayList<>();
+        List<Integer> xs = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+
+        LazyEffect<String, List<Integer>> program = parTraverse(xs, x -> LazyEffect.<String, Integer>async(() -> {
+            started.incrementAndGet();
+            CompletableFuture<Validation<String, Integer>> step = Delays.after(10_000_000).thenApply(u -> success(x));
+            steps.add(step);
+            return step;
+        }), 2, CONCAT, POOL).timeout(new Timeout(Duration.ofMillis(50), POOL), () -> "timed out");
+
+        assertThat(program.runAsync(POOL).get(5, TimeUnit.SECONDS), is(fail("timed out")));
+        int startedAtTimeout = started.get();
+        sleep(300);
+        assertThat(started.get(), is(startedAtTimeout));
+        assertThat(startedAtTimeout < xs.size(), is(true));
+        //the elements in progress were abandoned, which cancelled the steps they awaited
+        assertThat(steps.stream().anyMatch(CompletableFuture::isCancelled), is(true));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void exceptionsPropagate() throws Throwable
+    {
+        LazyEffect<String, Integer> broken = pure(() -> {
+            throw new IllegalStateException("broken");
+        });
+        try
+        {
+            zip(pure(1), broken, CONCAT, POOL).runAsync(POOL).get();
+        }
+        catch (ExecutionException e)
+        {
+            throw e.getCause();
+        }
+    }
+
+    private static void sleep(long millis)
+    {
+        try
+        {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
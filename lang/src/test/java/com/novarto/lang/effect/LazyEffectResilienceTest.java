@@ -0,0 +1,150 @@
+package com.novarto.lang.effect;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.novarto.lang.effect.LazyEffect.error;
+import static com.novarto.lang.effect.LazyEffect.pure;
+import static fj.data.Validation.fail;
+import static fj.data.Validation.success;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class LazyEffectResilienceTest
+{
+    private final AtomicInteger evaluations = new AtomicInteger();
+
+    private LazyEffect<String, Integer> failingTimes(int n)
+    {
+        return LazyEffect.<String, Integer>pure(evaluations::incrementAndGet)
+                .bind(x -> x <= n ? error("failure " + x) : pure(x));
+    }
+
+    @Test
+    public void retryUntilSuccess() throws Exception
+    {
+        Retry<String> policy = new Retry<>(5, Duration.ofMillis(1), Duration.ofMillis(10));
+
+        assertThat(failingTimes(2).retry(policy).run(), is(success(3)));
+        assertThat(policy.attempts(), is(3L));
+        assertThat(policy.retries(), is(2L));
+        assertThat(policy.exhausted(), is(0L));
+
+        evaluations.set(0);
+        assertThat(failingTimes(2).retry(policy).runAsync().get(5, TimeUnit.SECONDS), is(success(3)));
+        assertThat(policy.attempts(), is(6L));
+    }
+
+    @Test
+    public void retryGivesUp()
+    {
+        Retry<String> policy = new Retry<>(3, Duration.ofMillis(1), Duration.ofMillis(1), 2, 0,
+                e -> !e.equals("fatal"));
+
+        assertThat(failingTimes(10).retry(policy).run(), is(fail("failure 3")));
+        assertThat(policy.attempts(), is(3L));
+        assertThat(policy.exhausted(), is(1L));
+
+        assertThat(LazyEffect.<String, Integer>error("fatal").retry(policy).run(), is(fail("fatal")));
+        assertThat(policy.attempts(), is(4L));
+        assertThat(policy.exhausted(), is(1L));
+    }
+
+    @Test
+    public void backoff()
+    {
+        Retry<String> policy = new Retry<>(10, Duration.ofNanos(100), Duration.ofNanos(1000), 2, 0.5, e -> true);
+        for (int i = 0; i < 100; i++)
+        {
+            long first = policy.delayNanos(1);
+            long third = policy.delayNanos(3);
+            long capped = policy.delayNanos(8);
+            assertThat(first >= 50 && first <= 100, is(true));
+            assertThat(third >= 200 && third <= 400, is(true));
+            assertThat(capped >= 500 && capped <= 1000, is(true));
+        }
+    }
+
+    @Test
+    public void timeout() throws Exception
+    {
+        Timeout timeout = new Timeout(Duration.ofMillis(50));
+        LazyEffect<String, Integer> slow = LazyEffect.<String>sleep(Duration.ofSeconds(10)).map(u -> 1);
+
+        assertThat(slow.timeout(timeout, () -> "timed out").run(), is(fail("timed out")));
+        assertThat(slow.timeout(timeout, () -> "timed out").runAsync().get(5, TimeUnit.SECONDS),
+                is(fail("timed out")));
+        assertThat(LazyEffect.<String, Integer>pure(1).timeout(timeout, () -> "timed out").run(), is(success(1)));
+
+        assertThat(timeout.evaluations(), is(3L));
+        assertThat(timeout.timeouts(), is(2L));
+    }
+
+    @Test
+    public void timeoutErrorSuppliedOnExecutor() throws Exception
+    {
+        ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "limited"));
+        try
+        {
+            Timeout timeout = new Timeout(Duration.ofMillis(20), executor);
+            LazyEffect<String, Integer> slow = LazyEffect.<String>sleep(Duration.ofSeconds(10)).map(u -> 1);
+
+            assertThat(slow.timeout(timeout, () -> Thread.currentThread().getName()).runAsync()
+                    .get(5, TimeUnit.SECONDS), is(fail("limited")));
+
+            //a throwing onTimeout fails the evaluation, rather than leaving it to hang
+            try
+            {
+                slow.timeout(timeout, () -> {
+                    throw new IllegalStateException("broken");
+                }).runAsync().get(5, TimeUnit.SECONDS);
+                Assert.fail();
+            }
+            catch (ExecutionException e)
+            {
+                assertThat(e.getCause().getMessage(), is("broken"));
+            }
+            assertThat(timeout.timeouts(), is(2L));
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void circuitBreaker()
+    {
+        AtomicLong clock = new AtomicLong();
+        CircuitBreaker breaker = new CircuitBreaker(2, Duration.ofNanos(100), clock::get);
+        LazyEffect<String, Integer> flaky = failingTimes(3).withCircuitBreaker(breaker, () -> "open");
+
+        assertThat(flaky.run(), is(fail("failure 1")));
+        assertThat(breaker.state(), is(CircuitBreaker.State.CLOSED));
+        assertThat(flaky.run(), is(fail("failure 2")));
+        assertThat(breaker.state(), is(CircuitBreaker.State.OPEN));
+
+        assertThat(flaky.run(), is(fail("open")));
+        assertThat(breaker.rejections(), is(1L));
+        assertThat(evaluations.get(), is(2));
+
+        //a failed trial opens the breaker again
+        clock.set(100);
+        assertThat(flaky.run(), is(fail("failure 3")));
+        assertThat(breaker.state(), is(CircuitBreaker.State.OPEN));
+        assertThat(flaky.run(), is(fail("open")));
+
+        clock.set(200);
+        assertThat(flaky.run(), is(success(4)));
+        assertThat(breaker.state(), is(CircuitBreaker.State.CLOSED));
+        assertThat(breaker.rejections(), is(2L));
+    }
+}
@@ -1,8 +1,11 @@
 package com.novarto.lang.effect;
 
 import fj.data.Validation;
+import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.concurrent.*;
+
 import static com.novarto.lang.effect.LazyEffect.*;
 import static fj.data.Validation.fail;
 import static fj.data.Validation.success;
@@ -54,6 +57,98 @@ public class LazyEffectTest
 
 
 
+    @Test public void deepChainsAreStackSafe()
+    {
+        int depth = 200000;
+
+        LazyEffect<String, Integer> leftNested = pure(0);
+        for (int i = 0; i < depth; i++)
+        {
+            leftNested = leftNested.bind(x -> pure(x + 1));
+        }
+        assertThat(leftNested.run(), is(success(depth)));
+
+        LazyEffect<String, Integer> mapped = pure(0);
+        for (int i = 0; i < depth; i++)
+        {
+            mapped = mapped.map(x -> x + 1).mapError(e -> e);
+        }
+        assertThat(mapped.run(), is(success(depth)));
+
+        assertThat(countDown(depth).run(), is(success(0)));
+    }
+
+    @Test public void failurePassesThroughChain()
+    {
+        LazyEffect<String, Integer> result = pure(0);
+        for (int i = 0; i < 1000; i++)
+        {
+            int j = i;
+            result = result.bind(x -> j == 500 ? error("failed at " + x) : pure(x + 1));
+        }
+        assertThat(result.mapError(String::length).map(x -> -1).run(), is(fail("failed at 500".length())));
+    }
+
+    @Test public void p1RoundTrip()
+    {
+        int[] runs = {0};
+        LazyEffect<String, Integer> counted = LazyEffect.<String, Integer>pure(() -> ++runs[0]);
+
+        LazyEffect<String, Integer> memoized = fromP1(counted.p.hardMemo());
+        assertThat(memoized.run(), is(success(1)));
+        assertThat(memoized.map(x -> x * 10).run(), is(success(10)));
+        assertThat(fromP1(counted.p).run(), is(success(2)));
+    }
+
+    @Test public void runAsync() throws Exception
+    {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+        try
+        {
+            LazyEffect<String, Integer> program = pure(1);
+            for (int i = 0; i < 1000; i++)
+            {
+                program = program.bind(x -> async(() -> later(timer, x + 1)));
+            }
+            assertThat(program.runAsync(pool).get(5, TimeUnit.SECONDS), is(success(1001)));
+            assertThat(program.run(), is(success(1001)));
+
+            LazyEffect<String, Integer> failed = program.bind(x -> LazyEffect.<String, Integer>error("failed " + x));
+            assertThat(failed.runAsync().get(5, TimeUnit.SECONDS), is(fail("failed 1001")));
+
+            LazyEffect<String, Integer> broken = program.map(x -> {
+                throw new IllegalStateException("broken");
+            });
+            try
+            {
+                broken.runAsync(pool).get(5, TimeUnit.SECONDS);
+                Assert.fail();
+            }
+            catch (ExecutionException e)
+            {
+                assertThat(e.getCause().getMessage(), is("broken"));
+            }
+        }
+        finally
+        {
+            pool.shutdownNow();
+            timer.shutdownNow();
+        }
+    }
+
+    private static CompletableFuture<Validation<String, Integer>> later(ScheduledExecutorService timer, int x)
+    {
+        CompletableFuture<Validation<String, Integer>> result = new CompletableFuture<>();
+        timer.schedule(() -> result.complete(success(x)), 10, TimeUnit.MICROSECONDS);
+        return result;
+    }
+
+    private static LazyEffect<String, Integer> countDown(int n)
+    {
+        return n == 0 ? pure(0) : LazyEffect.<String, Integer>pure(n).bind(x -> countDown(x - 1));
+    }
+
     private static <A> A eval(LazyEffect<RuntimeException, A> program)
     {
         Validation<RuntimeException, A> result = program.run();